@@ -0,0 +1,240 @@
+package site.javadev.springsecuritydemo1508home.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Клиент для вызовов внешних сервисов. Один java.net.http.HttpClient на все приложение: соединения
+ * переиспользуются, с серверами, поддерживающими HTTP/2, запросы мультиплексируются в одном соединении.
+ * <p>
+ * Число одновременных запросов к одному хосту ограничено (outbound.max-concurrent-per-host): медленный
+ * сервис не забирает все потоки приложения, а лишний запрос быстро получает ошибку.
+ * Одинаковые GET-запросы (тот же URI и заголовки), отправленные, пока первый еще выполняется,
+ * не уходят в сеть повторно, а получают его ответ.
+ */
+@Component
+public class OutboundClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Duration requestTimeout;
+    private final Duration acquireTimeout;
+    private final int maxConcurrentPerHost;
+
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+    private final Map<InFlightKey, CompletableFuture<HttpResponse<byte[]>>> inFlightGets = new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public OutboundClient(ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${outbound.connect-timeout:PT2S}") Duration connectTimeout,
+                          @Value("${outbound.request-timeout:PT5S}") Duration requestTimeout,
+                          @Value("${outbound.acquire-timeout:PT1S}") Duration acquireTimeout,
+                          @Value("${outbound.max-concurrent-per-host:32}") int maxConcurrentPerHost) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.requestTimeout = requestTimeout;
+        this.acquireTimeout = acquireTimeout;
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    public <T> T getJson(URI uri, Class<T> responseType) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return readJson(send(request), responseType);
+    }
+
+    public <T> T postJson(URI uri, Object body, Class<T> responseType) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(uri)
+                    .header("Accept", "application/json")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new OutboundClientException("Cannot serialize request body for " + uri, e);
+        }
+        return readJson(send(request), responseType);
+    }
+
+    /**
+     * Выполняет запрос и возвращает ответ с любым кодом. Запрос без собственного таймаута
+     * получает outbound.request-timeout.
+     */
+    public HttpResponse<byte[]> send(HttpRequest request) {
+        if (!"GET".equals(request.method())) {
+            return execute(request);
+        }
+
+        InFlightKey key = new InFlightKey(request.uri(), request.headers());
+        CompletableFuture<HttpResponse<byte[]>> own = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<byte[]>> existing = inFlightGets.putIfAbsent(key, own);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing, request);
+        }
+        try {
+            HttpResponse<byte[]> response = execute(request);
+            own.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightGets.remove(key, own);
+        }
+    }
+
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public int inFlightCount() {
+        int inFlight = 0;
+        for (HostState state : hosts.values()) {
+            inFlight += maxConcurrentPerHost - state.permits.availablePermits();
+        }
+        return inFlight;
+    }
+
+    @PreDestroy
+    void close() {
+        httpClient.shutdownNow();
+    }
+
+    private HttpResponse<byte[]> execute(HttpRequest request) {
+        String host = request.uri().getAuthority();
+        HostState state = hosts.computeIfAbsent(host, key -> new HostState(key, maxConcurrentPerHost));
+        Semaphore permits = state.permits;
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new OutboundClientException("Too many concurrent requests to " + host, 0);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OutboundClientException("Interrupted while waiting for " + host, e);
+        }
+
+        long started = System.nanoTime();
+        String outcome = "IO_ERROR";
+        try {
+            HttpRequest timed = request.timeout().isPresent() ? request
+                    : HttpRequest.newBuilder(request, (name, value) -> true).timeout(requestTimeout).build();
+            HttpResponse<byte[]> response = httpClient.send(timed, HttpResponse.BodyHandlers.ofByteArray());
+            outcome = String.valueOf(response.statusCode());
+            return response;
+        } catch (HttpTimeoutException e) {
+            outcome = "TIMEOUT";
+            throw new OutboundClientException("Request to " + host + " timed out", e);
+        } catch (IOException e) {
+            throw new OutboundClientException("Request to " + host + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OutboundClientException("Interrupted while calling " + host, e);
+        } finally {
+            permits.release();
+            state.timer(request.method(), outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Ждем чужой запрос не дольше, чем выполнялся бы собственный
+    private HttpResponse<byte[]> await(CompletableFuture<HttpResponse<byte[]>> inFlight, HttpRequest request) {
+        Duration timeout = request.timeout().orElse(requestTimeout).plus(acquireTimeout);
+        try {
+            return inFlight.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OutboundClientException cause) {
+                throw cause;
+            }
+            throw new OutboundClientException("Request to " + request.uri().getAuthority() + " failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new OutboundClientException("Request to " + request.uri().getAuthority() + " timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OutboundClientException("Interrupted while calling " + request.uri().getAuthority(), e);
+        }
+    }
+
+    private <T> T readJson(HttpResponse<byte[]> response, Class<T> responseType) {
+        if (response.statusCode() / 100 != 2) {
+            throw new OutboundClientException("Unexpected status " + response.statusCode()
+                    + " from " + response.uri(), response.statusCode());
+        }
+        try {
+            return objectMapper.readValue(response.body(), responseType);
+        } catch (IOException e) {
+            throw new OutboundClientException("Cannot parse response from " + response.uri(), e);
+        }
+    }
+
+    private record InFlightKey(URI uri, HttpHeaders headers) {
+    }
+
+    private record TimerKey(String method, String outcome) {
+    }
+
+    // Состояние хоста: разрешения на одновременные запросы и таймеры, созданные один раз на метод и исход,
+    // чтобы запрос не собирал Timer.builder и не искал метр в реестре
+    private final class HostState {
+
+        private final String host;
+        private final Semaphore permits;
+        private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+        private HostState(String host, int maxConcurrent) {
+            this.host = host;
+            this.permits = new Semaphore(maxConcurrent);
+        }
+
+        private Timer timer(String method, String outcome) {
+            TimerKey key = new TimerKey(method, outcome);
+            Timer timer = timers.get(key);
+            if (timer == null) {
+                timer = timers.computeIfAbsent(key, k -> Timer.builder("outbound.requests")
+                        .description("Requests to downstream services")
+                        .tag("host", host)
+                        .tag("method", method)
+                        .tag("status", outcome)
+                        .register(meterRegistry));
+            }
+            return timer;
+        }
+    }
+}
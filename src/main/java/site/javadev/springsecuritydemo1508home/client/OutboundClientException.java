@@ -0,0 +1,24 @@
+package site.javadev.springsecuritydemo1508home.client;
+
+/**
+ * Ошибка вызова внешнего сервиса: нет ответа (таймаут, обрыв соединения), превышен лимит одновременных
+ * запросов к хосту или ответ с кодом не 2xx. status - код ответа или 0, если ответа нет.
+ */
+public class OutboundClientException extends RuntimeException {
+
+    private final int status;
+
+    public OutboundClientException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
+
+    public OutboundClientException(String message, Throwable cause) {
+        super(message, cause);
+        this.status = 0;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
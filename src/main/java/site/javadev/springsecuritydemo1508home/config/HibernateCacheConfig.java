@@ -0,0 +1,55 @@
+package site.javadev.springsecuritydemo1508home.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import site.javadev.springsecuritydemo1508home.model.Person;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Регионы кэша второго уровня Hibernate. Кэш локален для узла, поэтому размер и срок жизни записей
+ * задаются свойствами person.cache.*: срок жизни ограничивает, как долго узел может видеть изменения,
+ * сделанные на других узлах.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    @Value("${person.cache.max-size:10000}")
+    private long maxSize;
+    @Value("${person.cache.ttl:PT5M}")
+    private Duration ttl;
+
+    // Свой CacheManager на каждый контекст: CacheManager по умолчанию один на JVM, и второй контекст
+    // (например, в тестах) не смог бы создать в нем те же регионы
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+        cacheManager.createCache(Person.CACHE_REGION, regionConfiguration());
+        cacheManager.createCache(Person.USERNAME_CACHE_REGION, regionConfiguration());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private CaffeineConfiguration<Object, Object> regionConfiguration() {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
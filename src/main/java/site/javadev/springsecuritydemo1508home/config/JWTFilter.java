@@ -1,62 +1,164 @@
 package site.javadev.springsecuritydemo1508home.config;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import site.javadev.springsecuritydemo1508home.security.PersonDetails;
 import site.javadev.springsecuritydemo1508home.security.PersonDetailsService;
+import site.javadev.springsecuritydemo1508home.security.TokenRevocationList;
+import site.javadev.springsecuritydemo1508home.security.VerifiedTokenCache;
 import site.javadev.springsecuritydemo1508home.util.JWTUtil;
 
 import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class JWTFilter extends OncePerRequestFilter {
 
     private final JWTUtil jwtUtil;
     private final PersonDetailsService personDetailsService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenRevocationList tokenRevocationList;
+    private final boolean stateless;
+    private final Set<String> publicPaths = Set.of(SecurityConfig.PUBLIC_PATHS);
 
+    // Время фаз проверки токена: поиск в кэше, разбор, проверка подписи, загрузка пользователя
+    private final Timer cacheTimer;
+    private final Timer parseTimer;
+    private final Timer verifyTimer;
+    private final Timer userLoadTimer;
+    private final Counter cachedCounter;
+    private final Counter verifiedCounter;
+    private final Counter rejectedCounter;
 
 
-    public JWTFilter(JWTUtil jwtUtil, PersonDetailsService personDetailsService) {
+    public JWTFilter(JWTUtil jwtUtil, PersonDetailsService personDetailsService, VerifiedTokenCache verifiedTokenCache,
+                     TokenRevocationList tokenRevocationList, MeterRegistry meterRegistry,
+                     @Value("${jwt.stateless:false}") boolean stateless) {
         this.jwtUtil = jwtUtil;
         this.personDetailsService = personDetailsService;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenRevocationList = tokenRevocationList;
+        this.stateless = stateless;
+
+        this.cacheTimer = phaseTimer(meterRegistry, "cache");
+        this.parseTimer = phaseTimer(meterRegistry, "parse");
+        this.verifyTimer = phaseTimer(meterRegistry, "verify");
+        this.userLoadTimer = phaseTimer(meterRegistry, "user_load");
+        this.cachedCounter = outcomeCounter(meterRegistry, "cached");
+        this.verifiedCounter = outcomeCounter(meterRegistry, "verified");
+        this.rejectedCounter = outcomeCounter(meterRegistry, "rejected");
+    }
+
+    private static Timer phaseTimer(MeterRegistry meterRegistry, String phase) {
+        return Timer.builder("auth.jwt.phase")
+                .description("Time spent in a phase of JWT authentication")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("auth.jwt.requests")
+                .description("Requests with a bearer token by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Открытые пути (SecurityConfig.PUBLIC_PATHS) не требуют аутентификации, токен для них не проверяется.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return publicPaths.contains(request.getServletPath());
+    }
+
+    /**
+     * Попадание в кэш проверенных токенов обходится без выделения памяти: ключ кэша - заголовок целиком.
+     * Отклоненный запрос дальше по цепочке не передается.
+     */
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         String authHeader = request.getHeader("Authorization");
 
-        if (authHeader != null && !authHeader.isBlank() && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-
-            if (token.isBlank() || token.isEmpty()) {
+        if (JWTUtil.isBearer(authHeader)) {
+            if (!JWTUtil.hasBearerToken(authHeader)) {
                 response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Token is empty or not valid");
                 return;
-            } else {
-                try {
-                    String username = jwtUtil.validateToken(token);
-                    UserDetails userDetails = personDetailsService.loadUserByUsername(username);
+            }
+            try {
+                long started = System.nanoTime();
+                Authentication upaToken = verifiedTokenCache.get(authHeader);
+                started = record(cacheTimer, started);
 
-                    UsernamePasswordAuthenticationToken upaToken
-                            = new UsernamePasswordAuthenticationToken(userDetails,
+                if (upaToken == null) {
+                    DecodedJWT decodedJWT = jwtUtil.decode(JWTUtil.bearerToken(authHeader));
+                    started = record(parseTimer, started);
+                    jwtUtil.verify(decodedJWT);
+                    boolean revoked = tokenRevocationList.isRevoked(decodedJWT);
+                    started = record(verifyTimer, started);
+                    if (revoked) {
+                        reject(response);
+                        return;
+                    }
+                    UserDetails userDetails = stateless ? jwtUtil.getPersonDetails(decodedJWT) : null;
+                    if (userDetails == null) {
+                        Optional<PersonDetails> personDetails =
+                                personDetailsService.findByUsername(jwtUtil.getUsername(decodedJWT));
+                        record(userLoadTimer, started);
+                        if (personDetails.isEmpty()) {
+                            // Пользователь удален после выдачи токена
+                            reject(response);
+                            return;
+                        }
+                        userDetails = personDetails.get();
+                    }
+
+                    upaToken = new UsernamePasswordAuthenticationToken(userDetails,
                             userDetails.getPassword(),
                             userDetails.getAuthorities());
-
-                    if (SecurityContextHolder.getContext().getAuthentication() == null) {
-                        SecurityContextHolder.getContext().setAuthentication(upaToken);
-                    }
-                } catch (JWTVerificationException e) {
-                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token is not valid");
+                    verifiedTokenCache.put(authHeader, upaToken, decodedJWT);
+                    verifiedCounter.increment();
+                } else {
+                    cachedCounter.increment();
                 }
 
+                if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                    SecurityContextHolder.getContext().setAuthentication(upaToken);
+                }
+            } catch (JWTVerificationException e) {
+                reject(response);
+                return;
             }
         }
         filterChain.doFilter(request, response);
     }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        rejectedCounter.increment();
+        response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token is not valid");
+    }
+
+    private static long record(Timer timer, long started) {
+        long now = System.nanoTime();
+        timer.record(now - started, TimeUnit.NANOSECONDS);
+        return now;
+    }
 }
@@ -0,0 +1,162 @@
+package site.javadev.springsecuritydemo1508home.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import site.javadev.springsecuritydemo1508home.client.OutboundClient;
+import site.javadev.springsecuritydemo1508home.datasource.ReplicaRoutingDataSource;
+import site.javadev.springsecuritydemo1508home.security.AuditLog;
+import site.javadev.springsecuritydemo1508home.security.BoundedPasswordEncoder;
+import site.javadev.springsecuritydemo1508home.security.LoginRateLimiter;
+import site.javadev.springsecuritydemo1508home.security.RefreshTokenStore;
+import site.javadev.springsecuritydemo1508home.security.TokenRevocationList;
+import site.javadev.springsecuritydemo1508home.security.UsernameFilter;
+import site.javadev.springsecuritydemo1508home.security.VerifiedTokenCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики компонентов, которые сами считают свою статистику: значения читаются при каждом опросе
+ * /actuator/prometheus, на горячем пути ничего дополнительно не выполняется.
+ * Время HTTP-запросов (http.server.requests) и вызовов репозиториев (spring.data.repository.invocations)
+ * собирает Spring Boot.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder passwordEncoderMetrics(BoundedPasswordEncoder passwordEncoder) {
+        return registry -> {
+            FunctionTimer.builder("auth.password.hash", passwordEncoder,
+                            BoundedPasswordEncoder::hashCount, BoundedPasswordEncoder::totalHashNanos, TimeUnit.NANOSECONDS)
+                    .description("BCrypt encode and matches operations")
+                    .register(registry);
+            FunctionCounter.builder("auth.password.rejected", passwordEncoder, BoundedPasswordEncoder::rejectedCount)
+                    .description("Hashing tasks rejected because the queue was full")
+                    .register(registry);
+            Gauge.builder("auth.password.queue", passwordEncoder, BoundedPasswordEncoder::queueDepth)
+                    .description("Hashing tasks waiting for a thread")
+                    .register(registry);
+            Gauge.builder("auth.password.active", passwordEncoder, BoundedPasswordEncoder::activeCount)
+                    .description("Hashing threads currently busy")
+                    .register(registry);
+            Gauge.builder("auth.password.pool", passwordEncoder, BoundedPasswordEncoder::poolSize)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder tokenCacheMetrics(VerifiedTokenCache verifiedTokenCache) {
+        return registry -> {
+            FunctionCounter.builder("auth.token.cache.requests", verifiedTokenCache, VerifiedTokenCache::hitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("auth.token.cache.requests", verifiedTokenCache, VerifiedTokenCache::missCount)
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("auth.token.cache.evictions", verifiedTokenCache, VerifiedTokenCache::evictionCount)
+                    .register(registry);
+            Gauge.builder("auth.token.cache.size", verifiedTokenCache, VerifiedTokenCache::size)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder loginRateLimiterMetrics(LoginRateLimiter loginRateLimiter) {
+        return registry -> {
+            FunctionCounter.builder("auth.login.rate", loginRateLimiter, LoginRateLimiter::allowedCount)
+                    .tag("result", "allowed")
+                    .register(registry);
+            FunctionCounter.builder("auth.login.rate", loginRateLimiter, LoginRateLimiter::rejectedByClientCount)
+                    .tag("result", "rejected_client")
+                    .register(registry);
+            FunctionCounter.builder("auth.login.rate", loginRateLimiter, LoginRateLimiter::rejectedByUsernameCount)
+                    .tag("result", "rejected_username")
+                    .register(registry);
+            Gauge.builder("auth.login.rate.keys", loginRateLimiter, LoginRateLimiter::trackedKeys)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder sessionMetrics(UsernameFilter usernameFilter, RefreshTokenStore refreshTokenStore,
+                                      TokenRevocationList tokenRevocationList) {
+        return registry -> {
+            FunctionCounter.builder("auth.username.filter.rejected", usernameFilter, UsernameFilter::rejectedCount)
+                    .description("Lookups answered by the username filter without a query")
+                    .register(registry);
+            Gauge.builder("auth.username.filter.bytes", usernameFilter, UsernameFilter::sizeInBytes)
+                    .register(registry);
+            Gauge.builder("auth.username.filter.rebuild.millis", usernameFilter, UsernameFilter::lastRebuildMillis)
+                    .register(registry);
+            Gauge.builder("auth.refresh.sessions", refreshTokenStore, RefreshTokenStore::size)
+                    .register(registry);
+            Gauge.builder("auth.token.revocations", tokenRevocationList, TokenRevocationList::size)
+                    .register(registry);
+        };
+    }
+
+    // Время самих запросов (outbound.requests по host, method, status) пишет OutboundClient
+    @Bean
+    public MeterBinder outboundClientMetrics(OutboundClient outboundClient) {
+        return registry -> {
+            FunctionCounter.builder("outbound.coalesced", outboundClient, OutboundClient::coalescedCount)
+                    .description("GET requests served by an identical request already in flight")
+                    .register(registry);
+            FunctionCounter.builder("outbound.rejected", outboundClient, OutboundClient::rejectedCount)
+                    .description("Requests rejected by the per-host concurrency limit")
+                    .register(registry);
+            Gauge.builder("outbound.in.flight", outboundClient, OutboundClient::inFlightCount)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder auditLogMetrics(AuditLog auditLog) {
+        return registry -> {
+            FunctionCounter.builder("audit.events", auditLog, AuditLog::writtenCount)
+                    .tag("result", "written")
+                    .register(registry);
+            FunctionCounter.builder("audit.events", auditLog, AuditLog::droppedCount)
+                    .tag("result", "dropped")
+                    .description("Events dropped because the audit queue was full")
+                    .register(registry);
+            FunctionCounter.builder("audit.events", auditLog, AuditLog::failedCount)
+                    .tag("result", "failed")
+                    .description("Events dropped because a batch failed to write twice")
+                    .register(registry);
+            Gauge.builder("audit.queue", auditLog, AuditLog::queueSize)
+                    .register(registry);
+        };
+    }
+
+    // Реплики подключаются только при заданном datasource.replica.urls
+    @Bean
+    public MeterBinder replicaRoutingMetrics(ObjectProvider<ReplicaRoutingDataSource> routingDataSource) {
+        return registry -> routingDataSource.ifAvailable(routing -> {
+            FunctionCounter.builder("datasource.reads", routing, ReplicaRoutingDataSource::replicaReadCount)
+                    .tag("route", "replica")
+                    .register(registry);
+            FunctionCounter.builder("datasource.reads", routing, ReplicaRoutingDataSource::fallbackReadCount)
+                    .tag("route", "fallback")
+                    .description("Read-only connections taken from the primary because no replica was usable")
+                    .register(registry);
+            FunctionCounter.builder("datasource.reads", routing, ReplicaRoutingDataSource::pinnedReadCount)
+                    .tag("route", "read_your_writes")
+                    .register(registry);
+            for (String replica : routing.replicaNames()) {
+                Gauge.builder("datasource.replica.lag", routing, r -> r.lagSeconds(replica))
+                        .tag("replica", replica)
+                        .baseUnit("seconds")
+                        .register(registry);
+                Gauge.builder("datasource.replica.available", routing, r -> r.isAvailable(replica) ? 1 : 0)
+                        .tag("replica", replica)
+                        .register(registry);
+            }
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package site.javadev.springsecuritydemo1508home.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import site.javadev.springsecuritydemo1508home.security.BCryptCostCalibrator;
+import site.javadev.springsecuritydemo1508home.security.BoundedPasswordEncoder;
+
+import java.util.Map;
+
+// Общий для servlet- и reactive-режима, поэтому вынесен из SecurityConfig
+@Configuration
+public class PasswordEncoderConfig {
+
+    // 0 - по числу процессоров
+    @Value("${security.password.hash-threads:0}")
+    private int hashThreads;
+    @Value("${security.password.hash-queue-capacity:64}")
+    private int hashQueueCapacity;
+    // 0 - подобрать при старте под security.password.target-hash-millis. Повышение стоимости - осознанный шаг:
+    // каждый вход со старым хэшем перехэширует пароль, а каждая проверка станет дороже во столько же раз
+    @Value("${security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+    @Value("${security.password.target-hash-millis:250}")
+    private long targetHashMillis;
+
+    @Bean
+    public BoundedPasswordEncoder passwordEncoder() {
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        int strength = bcryptStrength > 0 ? bcryptStrength : BCryptCostCalibrator.calibrate(targetHashMillis);
+
+        // Хэши сохраняются с префиксом {bcrypt}; старые хэши без префикса проверяются BCrypt
+        // и помечаются как требующие перехэширования
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder delegatingEncoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegatingEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        return new BoundedPasswordEncoder(delegatingEncoder, threads, hashQueueCapacity);
+    }
+}
@@ -1,6 +1,7 @@
 package site.javadev.springsecuritydemo1508home.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -9,24 +10,33 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import site.javadev.springsecuritydemo1508home.security.BoundedPasswordEncoder;
 import site.javadev.springsecuritydemo1508home.security.PersonDetailsService;
 
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SecurityConfig  {
 
+    // Открытые пути: доступны без аутентификации, и JWTFilter для них не вызывается
+    public static final String[] PUBLIC_PATHS = {"/api/v1/login", "/api/v1/registration", "/api/v1/token/refresh",
+            "/error", "/actuator/health"};
+    // Метрики раскрывают внутреннее состояние узла и доступны только администраторам
+    public static final String[] ADMIN_PATHS = {"/actuator/prometheus", "/actuator/metrics/**"};
+
     private final PersonDetailsService personDetailsService;
     private final JWTFilter jwtFilter;
+    private final BoundedPasswordEncoder passwordEncoder;
 
     @Autowired
-    public SecurityConfig(PersonDetailsService personDetailsService, JWTFilter jwtFilter) {
+    public SecurityConfig(PersonDetailsService personDetailsService, JWTFilter jwtFilter,
+                          BoundedPasswordEncoder passwordEncoder) {
         this.personDetailsService = personDetailsService;
         this.jwtFilter = jwtFilter;
+        this.passwordEncoder = passwordEncoder;
     }
 
 
@@ -36,7 +46,8 @@ public class SecurityConfig  {
         http.csrf().disable()
                 .authorizeHttpRequests(
                         (s) ->
-                                s.requestMatchers("/api/v1/login", "/api/v1/registration", "/error").permitAll()
+                                s.requestMatchers(PUBLIC_PATHS).permitAll()
+                                        .requestMatchers(ADMIN_PATHS).hasRole("ADMIN")
                                         .anyRequest().authenticated())
                 .sessionManagement()
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS);
@@ -51,14 +62,8 @@ public class SecurityConfig  {
             throws Exception {
         return http.getSharedObject(AuthenticationManagerBuilder.class)
                 .userDetailsService(personDetailsService)
-                .passwordEncoder(passwordEncoder())
+                .passwordEncoder(passwordEncoder)
                 .and().build();
     }
 
-
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package site.javadev.springsecuritydemo1508home.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Пропускает в лог только каждый rate-й (в среднем) SQL-запрос Hibernate. Подключается в logback-spring.xml
+ * и отбрасывает событие до его создания. Медленные запросы пишутся отдельным логгером org.hibernate.SQL_SLOW
+ * и не сэмплируются.
+ */
+public class SqlLogSamplingFilter extends TurboFilter {
+
+    private static final String SQL_LOGGER = "org.hibernate.SQL";
+
+    private int rate = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // format == null - это проверка isDebugEnabled(), ее не трогаем
+        if (format == null || rate <= 1 || !SQL_LOGGER.equals(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextInt(rate) == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setRate(int rate) {
+        this.rate = rate;
+    }
+}
@@ -1,24 +1,38 @@
 package site.javadev.springsecuritydemo1508home.controllers;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.groups.Default;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import site.javadev.springsecuritydemo1508home.dto.PersonDTO;
 import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.security.AuditLog;
+import site.javadev.springsecuritydemo1508home.security.LoginRateLimiter;
+import site.javadev.springsecuritydemo1508home.security.PasswordHashingBusyException;
 import site.javadev.springsecuritydemo1508home.security.PersonDetails;
+import site.javadev.springsecuritydemo1508home.security.RefreshTokenStore;
+import site.javadev.springsecuritydemo1508home.security.TokenRevocationList;
 import site.javadev.springsecuritydemo1508home.service.PeopleService;
+import site.javadev.springsecuritydemo1508home.service.UsernameAlreadyExistsException;
 import site.javadev.springsecuritydemo1508home.util.JWTUtil;
 
 import java.util.Map;
-import java.util.Optional;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/v1")
 @RequiredArgsConstructor // Lombok автоматически генерирует конструктор для финальных полей
 public class AuthController {
@@ -26,29 +40,48 @@ public class AuthController {
     private final PeopleService peopleService;
     private final JWTUtil jwtUtil;
     private final AuthenticationManager authenticationManager;
+    private final LoginRateLimiter loginRateLimiter;
+    private final RefreshTokenStore refreshTokenStore;
+    private final TokenRevocationList tokenRevocationList;
+    private final MeterRegistry meterRegistry;
+    private final AuditLog auditLog;
 
     /**
      * Обработчик запроса на вход пользователя.
      * Аутентифицирует пользователя и возвращает JWT-токен.
      */
     @PostMapping("/login")
-    public ResponseEntity<Map<String, String>> login(@RequestBody @Valid PersonDTO authDTO) {
+    public ResponseEntity<Map<String, String>> login(@RequestBody @Validated({Default.class, PersonDTO.PasswordRequired.class}) PersonDTO authDTO, HttpServletRequest request) {
+        // Лимит попыток проверяется до хэширования пароля
+        long retryAfterMillis = loginRateLimiter.tryAcquire(request.getRemoteAddr(), authDTO.getUsername());
+        if (retryAfterMillis > 0) {
+            recordLogin("rate_limited", authDTO, null, request);
+            return tooManyAttempts(retryAfterMillis);
+        }
+
         // Создаем объект для аутентификации пользователя
         UsernamePasswordAuthenticationToken userToken =
                 new UsernamePasswordAuthenticationToken(authDTO.getUsername(), authDTO.getPassword());
 
+        Authentication authentication;
         try {
             // Аутентифицируем пользователя
-            authenticationManager.authenticate(userToken);
+            authentication = authenticationManager.authenticate(userToken);
+        } catch (PasswordHashingBusyException e) {
+            recordLogin("busy", authDTO, null, request);
+            return hashingBusy(e);
         } catch (Exception e) {
             // Если аутентификация не удалась, возвращаем ошибку 401
+            recordLogin("bad_credentials", authDTO, null, request);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Incorrect login or password"));
         }
 
         // Генерируем JWT-токен для пользователя
-        String token = jwtUtil.generateToken(authDTO.getUsername());
-        return ResponseEntity.ok(Map.of("jwt-token", token));
+        PersonDetails personDetails = (PersonDetails) authentication.getPrincipal();
+        peopleService.upgradePasswordIfNeeded(personDetails.getPerson(), authDTO.getPassword());
+        recordLogin("success", authDTO, personDetails.getPerson().getId(), request);
+        return ResponseEntity.ok(issueTokens(personDetails.getPerson()));
     }
 
     /**
@@ -56,26 +89,75 @@ public class AuthController {
      * Сохраняет пользователя в базе и возвращает JWT-токен.
      */
     @PostMapping("/registration")
-    public ResponseEntity<Map<String, String>> registration(@RequestBody @Valid PersonDTO personDTO) {
+    public ResponseEntity<Map<String, String>> registration(@RequestBody @Validated({Default.class, PersonDTO.PasswordRequired.class}) PersonDTO personDTO,
+                                                            BindingResult bindingResult, HttpServletRequest request) {
+        // Ошибки проверки разбираются здесь, а не обработчиком Spring, чтобы отказ попал в аудит
+        if (bindingResult.hasErrors()) {
+            FieldError error = bindingResult.getFieldError();
+            recordRegistration("invalid", personDTO, request);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", error != null ? error.getField() + ": " + error.getDefaultMessage()
+                            : "Request is not valid"));
+        }
+
         // Проверяем, что пароль не пустой и содержит не менее 4 символов
         if (personDTO.getPassword() == null || personDTO.getPassword().length() < 4) {
+            recordRegistration("invalid", personDTO, request);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", "Password must be at least 4 characters"));
         }
 
-        // Проверяем, существует ли пользователь с таким именем
-        Optional<Person> existingPerson = peopleService.findByUsername(personDTO.getUsername());
-        if (existingPerson.isPresent()) {
-            return ResponseEntity.status(HttpStatus.CONFLICT)
-                    .body(Map.of("error", "User already exists"));
+        // Передаем DTO в сервис, который преобразует его в Person и сохраняет.
+        // Занятое имя отклоняет уникальный индекс, ответ 409 формирует usernameConflict
+        Person person;
+        try {
+            person = peopleService.registerPerson(personDTO);
+        } catch (UsernameAlreadyExistsException e) {
+            recordRegistration("exists", personDTO, request);
+            throw e;
         }
-
-        // Передаем DTO в сервис, который преобразует его в Person и сохраняет
-        Person person = peopleService.registerPerson(personDTO);
+        auditLog.record(AuditLog.Event.REGISTRATION, "success", person.getId(), person.getUsername(), null,
+                request.getRemoteAddr());
 
         // Генерируем JWT-токен для нового пользователя
-        String token = jwtUtil.generateToken(person.getUsername());
-        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("jwt-token", token));
+        return ResponseEntity.status(HttpStatus.CREATED).body(issueTokens(person));
+    }
+
+    /**
+     * Выдает новую пару токенов по refresh-токену без проверки пароля.
+     * Предъявленный refresh-токен становится недействительным.
+     */
+    @PostMapping("/token/refresh")
+    public ResponseEntity<Map<String, String>> refresh(@RequestBody Map<String, String> body) {
+        RefreshTokenStore.Rotation rotation = refreshTokenStore.rotate(body.get("refresh-token"));
+        if (rotation == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Refresh token is not valid"));
+        }
+
+        // Роль и имя берутся из базы, чтобы новый токен отражал текущее состояние пользователя
+        return peopleService.findById(rotation.personId())
+                .map(person -> ResponseEntity.ok(Map.of(
+                        "jwt-token", jwtUtil.generateToken(person),
+                        "refresh-token", rotation.refreshToken())))
+                .orElseGet(() -> {
+                    refreshTokenStore.revokeAll(rotation.personId());
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                            .body(Map.of("error", "Refresh token is not valid"));
+                });
+    }
+
+    /**
+     * Выход: отзывает текущий access-токен на всех узлах и, если передан, закрывает сессию refresh-токена.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Map<String, String>> logout(@RequestHeader(HttpHeaders.AUTHORIZATION) String authHeader,
+                                                      @RequestBody(required = false) Map<String, String> body) {
+        tokenRevocationList.revokeToken(jwtUtil.verifyToken(JWTUtil.bearerToken(authHeader)));
+        if (body != null) {
+            refreshTokenStore.revoke(body.get("refresh-token"));
+        }
+        return ResponseEntity.ok(Map.of("message", "Logged out"));
     }
 
     /**
@@ -92,8 +174,18 @@ public class AuthController {
      * Обновление информации о пользователе.
      */
     @PutMapping("/user/{id}")
-    public ResponseEntity<Map<String, String>> updateUser(@PathVariable Long id, @RequestBody @Valid PersonDTO updatedPerson) {
-        boolean isUpdated = peopleService.updatePerson(id, updatedPerson);
+    public ResponseEntity<Map<String, String>> updateUser(@PathVariable Long id, @RequestBody @Valid PersonDTO updatedPerson,
+                                                          HttpServletRequest request, Authentication authentication) {
+        boolean isUpdated;
+        try {
+            isUpdated = peopleService.updatePerson(id, updatedPerson);
+        } catch (UsernameAlreadyExistsException e) {
+            auditLog.record(AuditLog.Event.UPDATE, "exists", id, updatedPerson.getUsername(),
+                    authentication.getName(), request.getRemoteAddr());
+            throw e;
+        }
+        auditLog.record(AuditLog.Event.UPDATE, isUpdated ? "success" : "not_found", id, updatedPerson.getUsername(),
+                authentication.getName(), request.getRemoteAddr());
         if (isUpdated) {
             return ResponseEntity.ok(Map.of("message", "User updated successfully"));
         } else {
@@ -106,8 +198,11 @@ public class AuthController {
      * Удаление пользователя по ID.
      */
     @DeleteMapping("/user/{id}")
-    public ResponseEntity<Map<String, String>> deleteUser(@PathVariable Long id) {
+    public ResponseEntity<Map<String, String>> deleteUser(@PathVariable Long id,
+                                                          HttpServletRequest request, Authentication authentication) {
         boolean isDeleted = peopleService.deletePerson(id);
+        auditLog.record(AuditLog.Event.DELETE, isDeleted ? "success" : "not_found", id, null,
+                authentication.getName(), request.getRemoteAddr());
         if (isDeleted) {
             return ResponseEntity.ok(Map.of("message", "User deleted successfully"));
         } else {
@@ -128,4 +223,48 @@ public class AuthController {
         }
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized");
     }
+
+    /**
+     * Пользователь с таким именем уже существует (регистрация или смена имени).
+     */
+    @ExceptionHandler(UsernameAlreadyExistsException.class)
+    public ResponseEntity<Map<String, String>> usernameConflict(UsernameAlreadyExistsException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "User already exists"));
+    }
+
+    /**
+     * Очередь хэширования паролей переполнена: просим клиента повторить запрос позже.
+     */
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<Map<String, String>> hashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "Server is busy, try again later"));
+    }
+
+    // Метрика и запись аудита; запись только ставится в очередь AuditLog
+    private void recordLogin(String outcome, PersonDTO authDTO, Long personId, HttpServletRequest request) {
+        meterRegistry.counter("auth.login", "outcome", outcome).increment();
+        auditLog.record(AuditLog.Event.LOGIN, outcome, personId, authDTO.getUsername(), null, request.getRemoteAddr());
+    }
+
+    private void recordRegistration(String outcome, PersonDTO personDTO, HttpServletRequest request) {
+        auditLog.record(AuditLog.Event.REGISTRATION, outcome, null, personDTO.getUsername(), null,
+                request.getRemoteAddr());
+    }
+
+    private Map<String, String> issueTokens(Person person) {
+        return Map.of("jwt-token", jwtUtil.generateToken(person),
+                "refresh-token", refreshTokenStore.issue(person.getId()));
+    }
+
+    /**
+     * Превышен лимит попыток входа по IP клиента или по имени пользователя.
+     */
+    public static ResponseEntity<Map<String, String>> tooManyAttempts(long retryAfterMillis) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMillis + 999) / 1000))
+                .body(Map.of("error", "Too many login attempts, try again later"));
+    }
 }
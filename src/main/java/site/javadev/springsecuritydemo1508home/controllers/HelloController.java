@@ -1,5 +1,8 @@
 package site.javadev.springsecuritydemo1508home.controllers;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -7,15 +10,18 @@ import org.springframework.web.bind.annotation.RestController;
 import site.javadev.springsecuritydemo1508home.security.PersonDetails;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class HelloController {
 
+    private static final Logger log = LoggerFactory.getLogger(HelloController.class);
+
     @GetMapping("/hello")
     public String hello() {
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         PersonDetails principal = (PersonDetails) authentication.getPrincipal();
 
-        System.out.println(principal.getUsername());
+        log.debug("Hello requested by {}", principal.getUsername());
 
         return "hello";
     }
@@ -0,0 +1,65 @@
+package site.javadev.springsecuritydemo1508home.controllers;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import site.javadev.springsecuritydemo1508home.dto.PersonPageDTO;
+import site.javadev.springsecuritydemo1508home.service.PeopleService;
+import site.javadev.springsecuritydemo1508home.service.PersonImportService;
+
+import java.io.IOException;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/v1/users")
+@RequiredArgsConstructor
+public class UsersController {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final PeopleService peopleService;
+    private final PersonImportService personImportService;
+
+    /**
+     * Список пользователей с постраничной выборкой по id.
+     * Для следующей страницы передайте nextAfterId из ответа в параметр afterId.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping
+    public ResponseEntity<PersonPageDTO> listUsers(@RequestParam(defaultValue = "0") long afterId,
+                                                   @RequestParam(defaultValue = "50") int limit,
+                                                   @RequestParam(required = false) String usernamePrefix,
+                                                   @RequestParam(required = false) String emailDomain,
+                                                   @RequestParam(required = false) Integer bornFrom,
+                                                   @RequestParam(required = false) Integer bornTo) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(peopleService.findPage(afterId, pageSize, usernamePrefix, emailDomain, bornFrom, bornTo));
+    }
+
+    /**
+     * Массовая регистрация пользователей. Принимает NDJSON или CSV
+     * и построчно возвращает результат в формате NDJSON по мере обработки.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/import", consumes = {NDJSON, CSV})
+    public void importUsers(HttpServletRequest request, HttpServletResponse response,
+                            Authentication authentication) throws IOException {
+        boolean csv = request.getContentType().startsWith(CSV);
+
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        personImportService.importPeople(request.getInputStream(), csv, response.getOutputStream(),
+                authentication.getName(), request.getRemoteAddr());
+    }
+}
@@ -0,0 +1,96 @@
+package site.javadev.springsecuritydemo1508home.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Чтение своих записей при работе с репликами. Пользователь, измененный на этом узле, в течение
+ * datasource.replica.read-your-writes-window читается из основной базы: реплика может еще не получить изменение,
+ * а прочитанная с нее старая версия попала бы в кэш второго уровня.
+ * Без реплик (datasource.replica.urls пуст) ничего не запоминается.
+ */
+@Component
+public class ReadYourWrites {
+
+    // Чтение из основной базы для текущего потока; проверяется в ReplicaRoutingDataSource
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final long windowNanos;
+    // Ключ ("id:..." или "username:...") -> System.nanoTime(), до которого читаем из основной базы
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWrites(@Value("${datasource.replica.urls:}") String replicaUrls,
+                          @Value("${datasource.replica.read-your-writes-window:PT5S}") Duration window) {
+        this.enabled = !replicaUrls.isBlank();
+        this.windowNanos = window.toNanos();
+    }
+
+    static boolean isPinnedToPrimary() {
+        return PINNED_TO_PRIMARY.get() != null;
+    }
+
+    /**
+     * Запоминает изменение пользователя. Вызывается после фиксации транзакции; usernames - все имена,
+     * под которыми пользователя могут искать (при переименовании - старое и новое).
+     */
+    public void written(Long personId, String... usernames) {
+        if (!enabled) {
+            return;
+        }
+        long until = System.nanoTime() + windowNanos;
+        if (personId != null) {
+            recentWrites.put("id:" + personId, until);
+        }
+        for (String username : usernames) {
+            if (username != null) {
+                recentWrites.put("username:" + username, until);
+            }
+        }
+    }
+
+    /**
+     * Выполняет чтение пользователя: из основной базы, если он недавно изменен, иначе как обычно.
+     */
+    public <T> T read(Long personId, String username, Supplier<T> query) {
+        if (isRecent(personId == null ? null : "id:" + personId) || isRecent(username == null ? null : "username:" + username)) {
+            return onPrimary(query);
+        }
+        return query.get();
+    }
+
+    /**
+     * Выполняет запрос на основной базе, даже если транзакция read-only.
+     */
+    public <T> T onPrimary(Supplier<T> query) {
+        if (!enabled || isPinnedToPrimary()) {
+            return query.get();
+        }
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            PINNED_TO_PRIMARY.remove();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.read-your-writes-window:PT5S}")
+    void purgeExpired() {
+        long now = System.nanoTime();
+        recentWrites.values().removeIf(until -> until - now <= 0);
+    }
+
+    private boolean isRecent(String key) {
+        if (!enabled || key == null) {
+            return false;
+        }
+        Long until = recentWrites.get(key);
+        return until != null && until - System.nanoTime() > 0;
+    }
+}
@@ -0,0 +1,199 @@
+package site.javadev.springsecuritydemo1508home.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Выдает соединения read-only транзакций с реплик (по кругу), все остальные - с основной базы.
+ * <p>
+ * Реплика используется, только если последняя проверка (datasource.replica.check-interval) выполнила на ней
+ * lag-query и отставание не больше datasource.replica.max-lag. Если ни одна реплика не подходит
+ * или соединение с ней не открылось, чтение идет в основную базу, а реплика исключается до следующей проверки.
+ * Недавно измененные пользователи читаются из основной базы (ReadYourWrites).
+ * <p>
+ * Транзакция выбирает базу по признаку read-only, который Spring выставляет уже после того, как Hibernate
+ * взял соединение, поэтому источник оборачивается в LazyConnectionDataSourceProxy (ReplicaDataSourceConfig).
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final int CHECK_TIMEOUT_SECONDS = 1;
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder fallbackReads = new LongAdder();
+    private final LongAdder pinnedReads = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, String lagQuery, Duration maxLag) {
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toNanos() / 1e9;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+        if (ReadYourWrites.isPinnedToPrimary()) {
+            pinnedReads.increment();
+            return primary.getConnection();
+        }
+        Replica replica = nextAvailable();
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.markUnavailable(e.getMessage());
+            }
+        }
+        fallbackReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Проверяет доступность и отставание реплик. Первая проверка выполняется при старте,
+     * до нее все чтения идут в основную базу.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.check-interval:PT2S}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+                try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                    double lag = resultSet.next() ? resultSet.getDouble(1) : Double.NaN;
+                    if (Double.isNaN(lag) || resultSet.wasNull()) {
+                        replica.markUnavailable("lag query returned no value");
+                    } else if (lag > maxLagSeconds) {
+                        replica.lagSeconds = lag;
+                        replica.markUnavailable("lag " + lag + " s");
+                    } else {
+                        replica.lagSeconds = lag;
+                        replica.markAvailable();
+                    }
+                }
+            } catch (SQLException e) {
+                replica.markUnavailable(e.getMessage());
+            }
+        }
+    }
+
+    public List<String> replicaNames() {
+        return replicas.stream().map(replica -> replica.name).toList();
+    }
+
+    public boolean isAvailable(String replicaName) {
+        return replica(replicaName).available;
+    }
+
+    // NaN, пока отставание не удалось измерить
+    public double lagSeconds(String replicaName) {
+        return replica(replicaName).lagSeconds;
+    }
+
+    public long replicaReadCount() {
+        return replicaReads.sum();
+    }
+
+    public long fallbackReadCount() {
+        return fallbackReads.sum();
+    }
+
+    public long pinnedReadCount() {
+        return pinnedReads.sum();
+    }
+
+    public void close() {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close replica {}: {}", replica.name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Replica nextAvailable() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Replica replica(String name) {
+        return replicas.stream()
+                .filter(replica -> replica.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown replica " + name));
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available;
+        private volatile double lagSeconds = Double.NaN;
+        private volatile boolean checked;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private void markAvailable() {
+            checked = true;
+            if (!available) {
+                available = true;
+                log.info("Replica {} is available, lag {} s", name, lagSeconds);
+            }
+        }
+
+        private void markUnavailable(String reason) {
+            // Недоступность при первой проверке тоже пишется в лог
+            if (available || !checked) {
+                checked = true;
+                available = false;
+                log.warn("Replica {} is not used for reads: {}", name, reason);
+            }
+        }
+    }
+}
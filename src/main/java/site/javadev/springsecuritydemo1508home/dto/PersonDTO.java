@@ -18,7 +18,9 @@ public class PersonDTO {
     @Size(min = 2, max = 20, message = "Поле должно быть от 2 до 20 символов")
     private String username;
 
-    @NotEmpty(message = "Поле не может быть пустым")
+    // Обязателен при входе, регистрации и импорте (группа PasswordRequired); в PUT /user/{id} отсутствие
+    // пароля значит "не менять". 20 символов даже в UTF-8 укладываются в 72 байта, которые учитывает BCrypt
+    @NotEmpty(groups = PasswordRequired.class, message = "Поле не может быть пустым")
     @Size(min = 2, max = 20, message = "Поле должно быть от 2 до 20 символов")
     private String password;
 
@@ -28,4 +30,7 @@ public class PersonDTO {
     @Email
     private String email;
 
+    public interface PasswordRequired {
+    }
+
 }
@@ -0,0 +1,13 @@
+package site.javadev.springsecuritydemo1508home.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PersonImportResultDTO {
+    private long line;
+    private String username;
+    private String status;
+    private String error;
+}
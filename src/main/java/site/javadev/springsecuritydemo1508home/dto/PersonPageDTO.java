@@ -0,0 +1,14 @@
+package site.javadev.springsecuritydemo1508home.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class PersonPageDTO {
+    private List<PersonSummaryDTO> items;
+    // id, который нужно передать в afterId для следующей страницы; null, если страница последняя
+    private Long nextAfterId;
+}
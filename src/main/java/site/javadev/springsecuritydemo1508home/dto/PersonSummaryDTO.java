@@ -0,0 +1,16 @@
+package site.javadev.springsecuritydemo1508home.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PersonSummaryDTO {
+    private Long id;
+    private String username;
+    private String email;
+    private Integer yearOfBirth;
+    private String role;
+}
@@ -6,21 +6,37 @@ import jakarta.validation.constraints.Size;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 @NoArgsConstructor
 @Entity
 @Getter
 @Setter
-@Table(name = "person_security")
+@Table(name = "person_security",
+        uniqueConstraints = @UniqueConstraint(name = Person.USERNAME_CONSTRAINT, columnNames = "username"))
+// Пользователь читается намного чаще, чем меняется: кэшируем по id и по имени (natural id)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Person.CACHE_REGION)
+@NaturalIdCache(region = Person.USERNAME_CACHE_REGION)
+// update пишет только изменившиеся столбцы
+@DynamicUpdate
 public class Person {
 
+    public static final String USERNAME_CONSTRAINT = "person_security_username_uq";
+    public static final String CACHE_REGION = "person";
+    public static final String USERNAME_CACHE_REGION = "person-by-username";
+
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PersonSequenceId
     private Long id;
 
     @NotEmpty(message = "Поле не может быть пустым")
     @Size(min = 2, max = 20, message = "Поле должно быть от 2 до 20 символов")
+    @NaturalId(mutable = true)
     @Column(name = "username")
     private String username;
 
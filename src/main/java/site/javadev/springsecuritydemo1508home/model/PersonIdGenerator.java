@@ -0,0 +1,35 @@
+package site.javadev.springsecuritydemo1508home.model;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Генератор id для person_security на последовательности с pooled-оптимизатором:
+ * одно обращение к последовательности выдает блок из increment_size идентификаторов,
+ * поэтому вставки не ждут id от базы и Hibernate может собирать их в пакеты.
+ * Размер блока задается свойством spring.jpa.properties.person_security.id.increment_size.
+ */
+public class PersonIdGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "person_security_seq";
+    public static final String INCREMENT_SIZE_SETTING = "person_security.id.increment_size";
+    public static final int DEFAULT_INCREMENT_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        Object incrementSize = serviceRegistry.requireService(ConfigurationService.class)
+                .getSettings()
+                .get(INCREMENT_SIZE_SETTING);
+
+        parameters.put(SEQUENCE_PARAM, NAME);
+        parameters.put(INCREMENT_PARAM, incrementSize != null ? incrementSize.toString() : String.valueOf(DEFAULT_INCREMENT_SIZE));
+        parameters.put(OPT_PARAM, StandardOptimizerDescriptor.POOLED.getExternalName());
+        super.configure(type, parameters, serviceRegistry);
+    }
+}
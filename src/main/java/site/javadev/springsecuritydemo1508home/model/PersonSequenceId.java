@@ -0,0 +1,17 @@
+package site.javadev.springsecuritydemo1508home.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Id из последовательности person_security_seq с pooled-оптимизатором (см. PersonIdGenerator).
+ */
+@IdGeneratorType(PersonIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PersonSequenceId {
+}
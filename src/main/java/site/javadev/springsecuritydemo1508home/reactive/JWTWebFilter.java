@@ -0,0 +1,97 @@
+package site.javadev.springsecuritydemo1508home.reactive;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import site.javadev.springsecuritydemo1508home.security.TokenRevocationList;
+import site.javadev.springsecuritydemo1508home.security.VerifiedTokenCache;
+import site.javadev.springsecuritydemo1508home.util.JWTUtil;
+
+/**
+ * Аналог JWTFilter для WebFlux. Проверка подписи выполняется прямо в потоке event loop (это дешево),
+ * пользователь загружается через R2DBC либо восстанавливается из claims в режиме jwt.stateless.
+ * Регистрируется только в цепочке безопасности ReactiveSecurityConfig, а не как бин.
+ */
+public class JWTWebFilter implements WebFilter {
+
+
+    private final JWTUtil jwtUtil;
+    private final ReactivePersonDetailsService personDetailsService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenRevocationList tokenRevocationList;
+    private final boolean stateless;
+
+    public JWTWebFilter(JWTUtil jwtUtil, ReactivePersonDetailsService personDetailsService,
+                        VerifiedTokenCache verifiedTokenCache, TokenRevocationList tokenRevocationList,
+                        boolean stateless) {
+        this.jwtUtil = jwtUtil;
+        this.personDetailsService = personDetailsService;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenRevocationList = tokenRevocationList;
+        this.stateless = stateless;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (!JWTUtil.isBearer(authHeader)) {
+            return chain.filter(exchange);
+        }
+
+        if (!JWTUtil.hasBearerToken(authHeader)) {
+            return reject(exchange, HttpStatus.BAD_REQUEST);
+        }
+
+        // Кэш проверенных токенов индексируется заголовком целиком, как и в JWTFilter
+        Authentication cached = verifiedTokenCache.get(authHeader);
+        if (cached != null) {
+            return chain.filter(exchange)
+                    .contextWrite(ReactiveSecurityContextHolder.withAuthentication(cached));
+        }
+
+        String token = JWTUtil.bearerToken(authHeader);
+        DecodedJWT decodedJWT;
+        UserDetails claimsUser;
+        try {
+            decodedJWT = jwtUtil.verifyToken(token);
+            if (tokenRevocationList.isRevoked(decodedJWT)) {
+                return reject(exchange, HttpStatus.UNAUTHORIZED);
+            }
+            claimsUser = stateless ? jwtUtil.getPersonDetails(decodedJWT) : null;
+        } catch (JWTVerificationException e) {
+            return reject(exchange, HttpStatus.UNAUTHORIZED);
+        }
+
+        Mono<UserDetails> userDetails = claimsUser != null
+                ? Mono.just(claimsUser)
+                : personDetailsService.findByUsername(jwtUtil.getUsername(decodedJWT));
+
+        return userDetails
+                .map(user -> {
+                    Authentication authentication =
+                            new UsernamePasswordAuthenticationToken(user, user.getPassword(), user.getAuthorities());
+                    verifiedTokenCache.put(authHeader, authentication, decodedJWT);
+                    return authentication;
+                })
+                // Отказ выбирается до вызова цепочки: ее результат (Mono<Void>) всегда пуст,
+                // и switchIfEmpty после нее сработал бы на каждом успешном запросе
+                .map(authentication -> chain.filter(exchange)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .defaultIfEmpty(Mono.defer(() -> reject(exchange, HttpStatus.UNAUTHORIZED)))
+                .flatMap(response -> response);
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, HttpStatus status) {
+        exchange.getResponse().setStatusCode(status);
+        return exchange.getResponse().setComplete();
+    }
+}
@@ -0,0 +1,159 @@
+package site.javadev.springsecuritydemo1508home.reactive;
+
+import jakarta.validation.groups.Default;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import site.javadev.springsecuritydemo1508home.dto.PersonDTO;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.controllers.AuthController;
+import site.javadev.springsecuritydemo1508home.security.BoundedPasswordEncoder;
+import site.javadev.springsecuritydemo1508home.security.LoginRateLimiter;
+import site.javadev.springsecuritydemo1508home.security.PasswordHashingBusyException;
+import site.javadev.springsecuritydemo1508home.security.RefreshTokenStore;
+import site.javadev.springsecuritydemo1508home.service.PersonMapper;
+import site.javadev.springsecuritydemo1508home.util.JWTUtil;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Те же контракты /login, /registration и /user/{id}, что и у AuthController, но без блокировок:
+ * база - через R2DBC, BCrypt - в ограниченном пуле BoundedPasswordEncoder, а не в потоках event loop.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/v1")
+public class ReactiveAuthController {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveAuthController.class);
+
+    private final ReactivePeopleRepository reactivePeopleRepository;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final PersonMapper personMapper;
+    private final JWTUtil jwtUtil;
+    private final LoginRateLimiter loginRateLimiter;
+    private final RefreshTokenStore refreshTokenStore;
+    // Хэш, с которым сравнивается пароль несуществующего пользователя: вход с неизвестным именем
+    // отвечает за то же время, что и с неверным паролем, и не выдает, какие имена заняты
+    private final String unknownUserPasswordHash;
+
+    public ReactiveAuthController(ReactivePeopleRepository reactivePeopleRepository,
+                                  BoundedPasswordEncoder passwordEncoder,
+                                  PersonMapper personMapper,
+                                  JWTUtil jwtUtil,
+                                  LoginRateLimiter loginRateLimiter,
+                                  RefreshTokenStore refreshTokenStore) {
+        this.reactivePeopleRepository = reactivePeopleRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.personMapper = personMapper;
+        this.jwtUtil = jwtUtil;
+        this.loginRateLimiter = loginRateLimiter;
+        this.refreshTokenStore = refreshTokenStore;
+        this.unknownUserPasswordHash = passwordEncoder.encode("unknown-user-password");
+    }
+
+    @PostMapping("/login")
+    public Mono<ResponseEntity<Map<String, String>>> login(@RequestBody @Validated({Default.class, PersonDTO.PasswordRequired.class}) PersonDTO authDTO,
+                                                           ServerWebExchange exchange) {
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        String clientAddress = remoteAddress != null ? remoteAddress.getHostString() : null;
+        long retryAfterMillis = loginRateLimiter.tryAcquire(clientAddress, authDTO.getUsername());
+        if (retryAfterMillis > 0) {
+            return Mono.just(AuthController.tooManyAttempts(retryAfterMillis));
+        }
+
+        return reactivePeopleRepository.findByUsername(authDTO.getUsername())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(found -> Mono.fromFuture(() -> passwordEncoder.matchesAsync(authDTO.getPassword(),
+                                found.map(Person::getPassword).orElse(unknownUserPasswordHash)))
+                        .filter(matches -> matches && found.isPresent())
+                        .map(matches -> {
+                            Person person = found.get();
+                            upgradePasswordIfNeeded(person, authDTO.getPassword());
+                            return ResponseEntity.ok(issueTokens(person));
+                        }))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(Map.of("error", "Incorrect login or password")));
+    }
+
+    @PostMapping("/registration")
+    public Mono<ResponseEntity<Map<String, String>>> registration(@RequestBody @Validated({Default.class, PersonDTO.PasswordRequired.class}) PersonDTO personDTO) {
+        if (personDTO.getPassword() == null || personDTO.getPassword().length() < 4) {
+            return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "Password must be at least 4 characters")));
+        }
+
+        Person person = personMapper.toPerson(personDTO);
+        person.setRole("ROLE_USER");
+        return Mono.fromFuture(() -> passwordEncoder.encodeAsync(personDTO.getPassword()))
+                .flatMap(hash -> {
+                    person.setPassword(hash);
+                    return reactivePeopleRepository.insert(person);
+                })
+                .map(saved -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(issueTokens(saved)))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "User already exists")));
+    }
+
+    @PostMapping("/token/refresh")
+    public Mono<ResponseEntity<Map<String, String>>> refresh(@RequestBody Map<String, String> body) {
+        RefreshTokenStore.Rotation rotation = refreshTokenStore.rotate(body.get("refresh-token"));
+        if (rotation == null) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Refresh token is not valid")));
+        }
+
+        return reactivePeopleRepository.findById(rotation.personId())
+                .map(person -> ResponseEntity.ok(Map.of(
+                        "jwt-token", jwtUtil.generateToken(person),
+                        "refresh-token", rotation.refreshToken())))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    refreshTokenStore.revokeAll(rotation.personId());
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                            .body(Map.of("error", "Refresh token is not valid"));
+                }));
+    }
+
+    @GetMapping("/user/{id}")
+    public Mono<ResponseEntity<PersonDTO>> getUserById(@PathVariable Long id) {
+        return reactivePeopleRepository.findById(id)
+                .map(person -> ResponseEntity.ok(personMapper.toDTO(person)))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<Map<String, String>> hashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "Server is busy, try again later"));
+    }
+
+    private Map<String, String> issueTokens(Person person) {
+        return Map.of("jwt-token", jwtUtil.generateToken(person),
+                "refresh-token", refreshTokenStore.issue(person.getId()));
+    }
+
+    // Перехэширование устаревшего пароля не задерживает ответ на вход
+    private void upgradePasswordIfNeeded(Person person, String rawPassword) {
+        String currentHash = person.getPassword();
+        if (currentHash == null || !passwordEncoder.upgradeEncoding(currentHash)) {
+            return;
+        }
+        Mono.fromFuture(() -> passwordEncoder.encodeAsync(rawPassword))
+                .flatMap(newHash -> reactivePeopleRepository.updatePassword(person.getId(), currentHash, newHash))
+                // Очередь занята - перехэшируем при одном из следующих входов
+                .onErrorResume(PasswordHashingBusyException.class, e -> Mono.empty())
+                .subscribe(updated -> { }, e -> log.warn("Password upgrade failed for user {}", person.getId(), e));
+    }
+}
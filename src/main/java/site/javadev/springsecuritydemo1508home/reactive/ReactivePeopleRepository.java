@@ -0,0 +1,94 @@
+package site.javadev.springsecuritydemo1508home.reactive;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.security.UsernameFilter;
+
+/**
+ * Доступ к person_security через R2DBC для reactive-режима.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePeopleRepository {
+
+    private static final String SELECT_PERSON =
+            "select id, username, year_of_birth, password, role, email from person_security";
+
+    private final DatabaseClient databaseClient;
+    private final UsernameFilter usernameFilter;
+
+    public ReactivePeopleRepository(DatabaseClient databaseClient, UsernameFilter usernameFilter) {
+        this.databaseClient = databaseClient;
+        this.usernameFilter = usernameFilter;
+    }
+
+    public Mono<Person> findByUsername(String username) {
+        if (!usernameFilter.mightContain(username)) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(SELECT_PERSON + " where username = :username")
+                .bind("username", username)
+                .map(ReactivePeopleRepository::toPerson)
+                .one();
+    }
+
+    public Mono<Person> findById(Long id) {
+        return databaseClient.sql(SELECT_PERSON + " where id = :id")
+                .bind("id", id)
+                .map(ReactivePeopleRepository::toPerson)
+                .one();
+    }
+
+    /**
+     * Вставляет пользователя одним запросом. Id берется из той же последовательности, что и у JPA:
+     * значение nextval - верхняя граница своего pooled-блока, поэтому с блоками Hibernate оно не пересекается.
+     * Пустой результат означает, что имя уже занято.
+     */
+    public Mono<Person> insert(Person person) {
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql("""
+                        insert into person_security (id, username, year_of_birth, password, role, email)
+                        values (nextval('person_security_seq'), :username, :yearOfBirth, :password, :role, :email)
+                        on conflict (username) do nothing
+                        returning id""");
+        insert = person.getYearOfBirth() != null
+                ? insert.bind("yearOfBirth", person.getYearOfBirth())
+                : insert.bindNull("yearOfBirth", Integer.class);
+
+        return insert
+                .bind("username", person.getUsername())
+                .bind("password", person.getPassword())
+                .bind("role", person.getRole())
+                .bind("email", person.getEmail())
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> {
+                    person.setId(id);
+                    usernameFilter.add(person.getUsername());
+                    return person;
+                });
+    }
+
+    public Mono<Long> updatePassword(Long id, String oldPassword, String newPassword) {
+        return databaseClient.sql("update person_security set password = :newPassword where id = :id and password = :oldPassword")
+                .bind("id", id)
+                .bind("oldPassword", oldPassword)
+                .bind("newPassword", newPassword)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static Person toPerson(Readable row) {
+        Person person = new Person();
+        person.setId(row.get("id", Long.class));
+        person.setUsername(row.get("username", String.class));
+        person.setYearOfBirth(row.get("year_of_birth", Integer.class));
+        person.setPassword(row.get("password", String.class));
+        person.setRole(row.get("role", String.class));
+        person.setEmail(row.get("email", String.class));
+        return person;
+    }
+}
@@ -0,0 +1,24 @@
+package site.javadev.springsecuritydemo1508home.reactive;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import site.javadev.springsecuritydemo1508home.security.PersonDetails;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePersonDetailsService implements ReactiveUserDetailsService {
+
+    private final ReactivePeopleRepository reactivePeopleRepository;
+
+    public ReactivePersonDetailsService(ReactivePeopleRepository reactivePeopleRepository) {
+        this.reactivePeopleRepository = reactivePeopleRepository;
+    }
+
+    @Override
+    public Mono<UserDetails> findByUsername(String username) {
+        return reactivePeopleRepository.findByUsername(username).map(PersonDetails::new);
+    }
+}
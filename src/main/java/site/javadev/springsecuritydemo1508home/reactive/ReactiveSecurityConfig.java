@@ -0,0 +1,49 @@
+package site.javadev.springsecuritydemo1508home.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import site.javadev.springsecuritydemo1508home.config.SecurityConfig;
+import site.javadev.springsecuritydemo1508home.security.TokenRevocationList;
+import site.javadev.springsecuritydemo1508home.security.VerifiedTokenCache;
+import site.javadev.springsecuritydemo1508home.util.JWTUtil;
+
+/**
+ * Настройки безопасности для reactive-профиля. Повторяет SecurityConfig:
+ * без сессий, открыты только вход и регистрация, остальное - по JWT-токену.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         JWTUtil jwtUtil,
+                                                         ReactivePersonDetailsService personDetailsService,
+                                                         VerifiedTokenCache verifiedTokenCache,
+                                                         TokenRevocationList tokenRevocationList,
+                                                         @Value("${jwt.stateless:false}") boolean stateless) {
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(SecurityConfig.PUBLIC_PATHS).permitAll()
+                        .pathMatchers(SecurityConfig.ADMIN_PATHS).hasRole("ADMIN")
+                        .anyExchange().authenticated())
+                .addFilterAt(new JWTWebFilter(jwtUtil, personDetailsService, verifiedTokenCache,
+                                tokenRevocationList, stateless),
+                        SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+}
@@ -1,13 +1,56 @@
 package site.javadev.springsecuritydemo1508home.repositories;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import site.javadev.springsecuritydemo1508home.dto.PersonSummaryDTO;
 import site.javadev.springsecuritydemo1508home.model.Person;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
-public interface PeopleRepository extends JpaRepository<Person, Long> {
+public interface PeopleRepository extends JpaRepository<Person, Long>, PeopleRepositoryCustom {
 
-    Optional<Person> findByUsername(String username);
+    // Предварительная проверка перед регистрацией при включенном фильтре имен; вызывается на основной базе
+    @Transactional(readOnly = true)
+    boolean existsByUsername(String username);
+
+    @Query("select p.username from Person p where p.username in :usernames")
+    Set<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    // Постраничная выборка по id (keyset): глубина страницы не влияет на стоимость запроса.
+    // Пароль в проекцию не попадает и из базы не читается. Read-only транзакция - чтобы запрос мог уйти на реплику
+    @Transactional(readOnly = true)
+    @Query("""
+            select new site.javadev.springsecuritydemo1508home.dto.PersonSummaryDTO(
+                   p.id, p.username, p.email, p.yearOfBirth, p.role)
+            from Person p
+            where p.id > :afterId
+              and (:usernamePrefix is null or p.username like :usernamePrefix escape '\\')
+              and (:emailDomain is null or lower(function('split_part', p.email, '@', 2)) = :emailDomain)
+              and (:bornFrom is null or p.yearOfBirth >= :bornFrom)
+              and (:bornTo is null or p.yearOfBirth <= :bornTo)
+            order by p.id
+            """)
+    List<PersonSummaryDTO> findPage(@Param("afterId") long afterId,
+                                    @Param("usernamePrefix") String usernamePrefix,
+                                    @Param("emailDomain") String emailDomain,
+                                    @Param("bornFrom") Integer bornFrom,
+                                    @Param("bornTo") Integer bornTo,
+                                    Limit limit);
+
+    // Пользователь с блокировкой строки до конца транзакции: изменения идут через сессию (только измененные
+    // столбцы, @DynamicUpdate), и Hibernate сам обновляет кэш второго уровня под своей блокировкой записи.
+    // Чтение минует кэш и реплики: запрос с блокировкой выполняется на основной базе
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Person p where p.id = :id")
+    Optional<Person> findForUpdate(@Param("id") Long id);
 }
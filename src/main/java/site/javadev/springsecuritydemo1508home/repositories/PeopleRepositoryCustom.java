@@ -0,0 +1,10 @@
+package site.javadev.springsecuritydemo1508home.repositories;
+
+import site.javadev.springsecuritydemo1508home.model.Person;
+
+import java.util.Optional;
+
+public interface PeopleRepositoryCustom {
+
+    Optional<Person> findByUsername(String username);
+}
@@ -0,0 +1,27 @@
+package site.javadev.springsecuritydemo1508home.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import site.javadev.springsecuritydemo1508home.model.Person;
+
+import java.util.Optional;
+
+public class PeopleRepositoryCustomImpl implements PeopleRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Поиск по natural id: сначала кэш имя -> id, затем кэш сущностей, и только при промахе - запрос к базе.
+     * Производный запрос Spring Data (where username = ?) кэш второго уровня не использует.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Person> findByUsername(String username) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Person.class)
+                .loadOptional(username);
+    }
+}
@@ -0,0 +1,195 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Журнал аудита: вход, регистрация, изменение и удаление пользователей пишутся в таблицу auth_audit.
+ * <p>
+ * Запрос только кладет событие в ограниченную очередь (audit.queue-capacity событий, порядка 200 байт каждое),
+ * отдельный поток забирает события пачками до audit.batch-size и пишет их одним batchUpdate:
+ * с reWriteBatchedInserts=true драйвер PostgreSQL превращает пачку в многострочный insert.
+ * Когда очередь заполнена, событие отбрасывается (audit.overflow=drop) или запрос ждет место
+ * не дольше audit.block-timeout (audit.overflow=block). Пачка, которую не удалось записать, повторяется
+ * один раз через audit.flush-interval и только потом теряется (счетчик failedCount). При остановке оставшиеся
+ * события дописываются.
+ */
+@Component
+@DependsOnDatabaseInitialization
+public class AuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final String INSERT = """
+            insert into auth_audit (created_at, event, outcome, person_id, username, actor, client_address)
+            values (?, ?, ?, ?, ?, ?, ?)""";
+
+    // Длина столбцов username, actor и client_address
+    private static final int MAX_VALUE_LENGTH = 64;
+
+    public enum Event { LOGIN, REGISTRATION, IMPORT, UPDATE, DELETE }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final boolean blockWhenFull;
+    private final long blockTimeoutNanos;
+    private final long flushIntervalNanos;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private Thread writer;
+    private volatile boolean running = true;
+
+    public AuditLog(JdbcTemplate jdbcTemplate,
+                    @Value("${audit.queue-capacity:65536}") int queueCapacity,
+                    @Value("${audit.batch-size:500}") int batchSize,
+                    @Value("${audit.overflow:drop}") String overflow,
+                    @Value("${audit.block-timeout:PT0.05S}") Duration blockTimeout,
+                    @Value("${audit.flush-interval:PT0.2S}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.blockWhenFull = "block".equalsIgnoreCase(overflow);
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.flushIntervalNanos = flushInterval.toNanos();
+    }
+
+    /**
+     * Добавляет событие в очередь. personId, username, actor и clientAddress могут быть null.
+     * actor - кто выполнил действие, если это не сам пользователь. Строки длиннее 64 символов обрезаются.
+     */
+    public void record(Event event, String outcome, Long personId, String username, String actor, String clientAddress) {
+        Entry entry = new Entry(System.currentTimeMillis(), event, outcome, personId, truncate(username),
+                truncate(actor), truncate(clientAddress));
+        boolean accepted;
+        if (blockWhenFull) {
+            try {
+                accepted = queue.offer(entry, blockTimeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(entry);
+        }
+        if (!accepted) {
+            dropped.increment();
+        }
+    }
+
+    // Значение длиннее столбца (например, имя из отклоненной регистрации) сорвало бы запись всей пачки
+    private static String truncate(String value) {
+        return value == null || value.length() <= MAX_VALUE_LENGTH ? value : value.substring(0, MAX_VALUE_LENGTH);
+    }
+
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * События, потерянные из-за ошибки записи после повтора.
+     */
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    public int queueSize() {
+        return queue.size();
+    }
+
+    @PostConstruct
+    void start() {
+        writer = Thread.ofPlatform().name("audit-writer").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // Без interrupt: прерванный поток мог бы потерять пачку, которую сейчас пишет
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        // Поток остановлен: дописываем то, что осталось в очереди
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Entry first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        try {
+            insert(batch);
+        } catch (DataAccessException e) {
+            log.warn("Failed to write {} audit events, retrying: {}", batch.size(), e.getMostSpecificCause().getMessage());
+            try {
+                TimeUnit.NANOSECONDS.sleep(flushIntervalNanos);
+                insert(batch);
+            } catch (DataAccessException retryError) {
+                failed.add(batch.size());
+                log.error("Dropped {} audit events after a failed retry: {}", batch.size(),
+                        retryError.getMostSpecificCause().getMessage());
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                failed.add(batch.size());
+            }
+        }
+    }
+
+    private void insert(List<Entry> batch) {
+        jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (statement, entry) -> {
+            statement.setTimestamp(1, new Timestamp(entry.createdAtMillis()));
+            statement.setString(2, entry.event().name());
+            statement.setString(3, entry.outcome());
+            statement.setObject(4, entry.personId(), Types.BIGINT);
+            statement.setString(5, entry.username());
+            statement.setString(6, entry.actor());
+            statement.setString(7, entry.clientAddress());
+        });
+        written.add(batch.size());
+    }
+
+    private record Entry(long createdAtMillis, Event event, String outcome, Long personId,
+                         String username, String actor, String clientAddress) {
+    }
+}
@@ -0,0 +1,42 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Подбирает стоимость BCrypt под текущую машину: наибольшую, при которой
+ * одно хэширование укладывается в заданное время.
+ */
+public final class BCryptCostCalibrator {
+
+    public static final int MIN_STRENGTH = 10;
+    public static final int MAX_STRENGTH = 16;
+
+    private static final Logger log = LoggerFactory.getLogger(BCryptCostCalibrator.class);
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+
+    private BCryptCostCalibrator() {
+    }
+
+    public static int calibrate(long targetMillis) {
+        // Прогрев, чтобы первое измерение не включало JIT и загрузку классов
+        new BCryptPasswordEncoder(MIN_STRENGTH).encode(SAMPLE_PASSWORD);
+
+        int strength = MIN_STRENGTH;
+        for (int candidate = MIN_STRENGTH; candidate <= MAX_STRENGTH; candidate++) {
+            BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(candidate);
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            if (elapsedMillis > targetMillis) {
+                break;
+            }
+            strength = candidate;
+        }
+
+        log.info("BCrypt strength {} selected for target hash time {} ms", strength, targetMillis);
+        return strength;
+    }
+}
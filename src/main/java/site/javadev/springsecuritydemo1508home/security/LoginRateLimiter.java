@@ -0,0 +1,157 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограничение частоты попыток входа по IP клиента и по имени пользователя.
+ * Проверяется до AuthenticationManager.authenticate, поэтому отклоненная попытка не стоит проверки BCrypt.
+ * <p>
+ * Каждое ведро хранит одно число - теоретическое время следующего запроса (GCRA),
+ * и обновляется через CAS без блокировок. Ведро, время которого уже прошло, полностью восстановилось
+ * и ничем не отличается от нового, поэтому при заполнении таблицы удаляются только такие записи.
+ * Если восстановившихся нет, новые ключи отклоняются, пока какое-нибудь ведро не восстановится:
+ * иначе поток запросов с новых адресов сбрасывал бы ограничение уже заблокированным клиентам.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final Limiter byClient;
+    private final Limiter byUsername;
+    private final int maxKeys;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejectedByClient = new LongAdder();
+    private final LongAdder rejectedByUsername = new LongAdder();
+
+    public LoginRateLimiter(@Value("${security.login-rate.client-per-minute:30}") int clientPerMinute,
+                            @Value("${security.login-rate.client-burst:10}") int clientBurst,
+                            @Value("${security.login-rate.username-per-minute:10}") int usernamePerMinute,
+                            @Value("${security.login-rate.username-burst:5}") int usernameBurst,
+                            @Value("${security.login-rate.max-keys:100000}") int maxKeys) {
+        this.byClient = new Limiter(clientPerMinute, clientBurst);
+        this.byUsername = new Limiter(usernamePerMinute, usernameBurst);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Возвращает 0, если попытку можно выполнять, иначе - через сколько миллисекунд стоит повторить.
+     */
+    public long tryAcquire(String clientAddress, String username) {
+        long now = System.nanoTime();
+
+        long waitNanos = byClient.tryAcquire(clientAddress, now);
+        if (waitNanos > 0) {
+            rejectedByClient.increment();
+            return toMillis(waitNanos);
+        }
+        waitNanos = byUsername.tryAcquire(username, now);
+        if (waitNanos > 0) {
+            rejectedByUsername.increment();
+            return toMillis(waitNanos);
+        }
+
+        allowed.increment();
+        return 0;
+    }
+
+    public long allowedCount() {
+        return allowed.sum();
+    }
+
+    public long rejectedByClientCount() {
+        return rejectedByClient.sum();
+    }
+
+    public long rejectedByUsernameCount() {
+        return rejectedByUsername.sum();
+    }
+
+    public int trackedKeys() {
+        return byClient.buckets.size() + byUsername.buckets.size();
+    }
+
+    private static long toMillis(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    private final class Limiter {
+
+        // Интервал между запросами при равномерной нагрузке и допустимое опережение графика (всплеск)
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final boolean enabled;
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        // Раньше этого времени ни одно ведро не восстановится: до него полная таблица не просматривается
+        private volatile long nextRecoveryNanos = System.nanoTime();
+
+        private Limiter(int perMinute, int burst) {
+            this.enabled = perMinute > 0;
+            this.intervalNanos = enabled ? TimeUnit.MINUTES.toNanos(1) / perMinute : 0;
+            this.toleranceNanos = intervalNanos * Math.max(1, burst);
+        }
+
+        private long tryAcquire(String key, long now) {
+            if (!enabled || key == null) {
+                return 0;
+            }
+
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxKeys) {
+                    long waitNanos = evict(now);
+                    if (waitNanos > 0) {
+                        return waitNanos;
+                    }
+                }
+                bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+
+            while (true) {
+                long tat = bucket.get();
+                long newTat = Math.max(tat, now) + intervalNanos;
+                long excess = newTat - now - toleranceNanos;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (bucket.compareAndSet(tat, newTat)) {
+                    return 0;
+                }
+            }
+        }
+
+        // Удаляет восстановившиеся ведра. Возвращает 0, если место появилось, иначе - время до ближайшего
+        // восстановления. Новые ведра в полную таблицу не попадают, а время старых только растет,
+        // поэтому до этого момента повторный просмотр ничего не освободит
+        private long evict(long now) {
+            long untilRecovery = nextRecoveryNanos - now;
+            if (untilRecovery > 0) {
+                return untilRecovery;
+            }
+
+            long earliest = Long.MAX_VALUE;
+            Iterator<AtomicLong> iterator = buckets.values().iterator();
+            while (iterator.hasNext()) {
+                long remaining = iterator.next().get() - now;
+                if (remaining <= 0) {
+                    iterator.remove();
+                } else {
+                    earliest = Math.min(earliest, remaining);
+                }
+            }
+
+            if (buckets.size() < maxKeys || earliest == Long.MAX_VALUE) {
+                return 0;
+            }
+            nextRecoveryNanos = now + earliest;
+            return earliest;
+        }
+    }
+}
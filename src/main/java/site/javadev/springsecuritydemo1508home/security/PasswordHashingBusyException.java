@@ -0,0 +1,8 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException() {
+        super("Password hashing queue is full", null, false, false);
+    }
+}
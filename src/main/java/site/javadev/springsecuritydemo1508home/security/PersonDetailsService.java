@@ -3,9 +3,8 @@ package site.javadev.springsecuritydemo1508home.security;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.datasource.ReadYourWrites;
 import site.javadev.springsecuritydemo1508home.repositories.PeopleRepository;
 
 import java.util.Optional;
@@ -14,20 +13,32 @@ import java.util.Optional;
 public class PersonDetailsService implements UserDetailsService {
 
     private final PeopleRepository peopleRepository;
+    private final UsernameFilter usernameFilter;
+    private final ReadYourWrites readYourWrites;
 
     @Autowired
-    public PersonDetailsService(PeopleRepository peopleRepository) {
+    public PersonDetailsService(PeopleRepository peopleRepository, UsernameFilter usernameFilter,
+                                ReadYourWrites readYourWrites) {
         this.peopleRepository = peopleRepository;
+        this.usernameFilter = usernameFilter;
+        this.readYourWrites = readYourWrites;
     }
 
-    @Override
-    public UserDetails loadUserByUsername(String username) {
-        Optional<Person> person = peopleRepository.findByUsername(username);
-
-        if (person.isEmpty()) {
-            throw new UsernameNotFoundException("Repository has not found user with username: " + username);
+    /**
+     * Поиск без исключений: для своего кода, которому промах - обычный результат, а не ошибка.
+     * Заведомо несуществующие имена отклоняются без запроса к базе.
+     */
+    public Optional<PersonDetails> findByUsername(String username) {
+        if (!usernameFilter.mightContain(username)) {
+            return Optional.empty();
         }
+        return readYourWrites.read(null, username, () -> peopleRepository.findByUsername(username))
+                .map(PersonDetails::new);
+    }
 
-        return new PersonDetails(person.get());
+    // Исключение при промахе требует контракт UserDetailsService (его вызывает AuthenticationManager)
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        return findByUsername(username).orElseThrow(UnknownUsernameException::new);
     }
 }
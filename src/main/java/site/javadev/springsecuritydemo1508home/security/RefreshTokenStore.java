@@ -0,0 +1,228 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище refresh-токенов. Токен имеет вид family.generation.secret: family - сессия, выданная при входе,
+ * generation - номер выдачи внутри сессии. На сессию хранится одна запись с текущим номером и хэшем секрета,
+ * сами секреты в памяти и в файле не хранятся.
+ * <p>
+ * Каждое обновление выдает следующий номер, а предыдущий токен становится недействительным.
+ * Повторное предъявление уже использованного токена означает, что он утек: сессия отзывается целиком.
+ * Срок жизни сессии скользящий - продлевается при каждом обновлении.
+ */
+@Component
+public class RefreshTokenStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenStore.class);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> sessionsByPerson = new ConcurrentHashMap<>();
+
+    private final long lifetimeMillis;
+    private final String storeFile;
+
+    public RefreshTokenStore(@Value("${jwt.refresh-token-minutes:20160}") long lifetimeMinutes,
+                             @Value("${jwt.refresh-token-file:}") String storeFile) {
+        this.lifetimeMillis = TimeUnit.MINUTES.toMillis(lifetimeMinutes);
+        this.storeFile = storeFile;
+    }
+
+    /**
+     * Открывает новую сессию после входа по паролю и возвращает ее первый refresh-токен.
+     */
+    public String issue(Long personId) {
+        String family = randomString(16);
+        String secret = randomString(32);
+        register(family, new Session(personId, 0, hash(secret), System.currentTimeMillis() + lifetimeMillis));
+        return family + "." + 0 + "." + secret;
+    }
+
+    /**
+     * Обменивает refresh-токен на следующий. Возвращает null для неизвестного, просроченного
+     * или уже использованного токена; в последнем случае сессия отзывается.
+     */
+    public Rotation rotate(String refreshToken) {
+        String[] parts = refreshToken == null ? new String[0] : refreshToken.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        String family = parts[0];
+        int generation;
+        try {
+            generation = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String presentedHash = hash(parts[2]);
+        String nextSecret = randomString(32);
+        long now = System.currentTimeMillis();
+
+        Rotation[] result = new Rotation[1];
+        Long[] revokedPerson = new Long[1];
+        sessions.computeIfPresent(family, (key, session) -> {
+            if (session.expiresAtMillis() <= now) {
+                revokedPerson[0] = session.personId();
+                return null;
+            }
+            if (generation == session.generation() && MessageDigest.isEqual(
+                    presentedHash.getBytes(StandardCharsets.US_ASCII), session.secretHash().getBytes(StandardCharsets.US_ASCII))) {
+                int nextGeneration = generation + 1;
+                result[0] = new Rotation(session.personId(), family + "." + nextGeneration + "." + nextSecret);
+                return new Session(session.personId(), nextGeneration, hash(nextSecret), now + lifetimeMillis);
+            }
+            if (generation < session.generation()) {
+                log.warn("Refresh token reuse detected, revoking session of user {}", session.personId());
+                revokedPerson[0] = session.personId();
+                return null;
+            }
+            return session;
+        });
+
+        if (revokedPerson[0] != null) {
+            unlink(family, revokedPerson[0]);
+        }
+        return result[0];
+    }
+
+    /**
+     * Закрывает сессию, к которой относится действующий refresh-токен (выход на одном устройстве).
+     */
+    public void revoke(String refreshToken) {
+        String[] parts = refreshToken == null ? new String[0] : refreshToken.split("\\.");
+        if (parts.length != 3) {
+            return;
+        }
+        String presentedHash = hash(parts[2]);
+        Session session = sessions.get(parts[0]);
+        if (session != null && session.secretHash().equals(presentedHash) && sessions.remove(parts[0], session)) {
+            unlink(parts[0], session.personId());
+        }
+    }
+
+    /**
+     * Отзывает все сессии пользователя, например после смены пароля или удаления.
+     */
+    public void revokeAll(Long personId) {
+        Set<String> families = sessionsByPerson.remove(personId);
+        if (families != null) {
+            families.forEach(sessions::remove);
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-token-purge-interval:PT10M}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        sessions.forEach((family, session) -> {
+            if (session.expiresAtMillis() <= now && sessions.remove(family, session)) {
+                unlink(family, session.personId());
+            }
+        });
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        if (storeFile.isBlank() || !Files.exists(Path.of(storeFile))) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (String line : Files.readAllLines(Path.of(storeFile), StandardCharsets.UTF_8)) {
+            String[] fields = line.split(" ");
+            if (fields.length != 5) {
+                continue;
+            }
+            Session session = new Session(Long.valueOf(fields[1]), Integer.parseInt(fields[2]), fields[3], Long.parseLong(fields[4]));
+            if (session.expiresAtMillis() > now) {
+                register(fields[0], session);
+            }
+        }
+        log.info("Loaded {} refresh token sessions from {}", sessions.size(), storeFile);
+    }
+
+    /**
+     * Сохраняет сессии в файл jwt.refresh-token-file при остановке, чтобы перезапуск не разлогинивал пользователей.
+     */
+    @PreDestroy
+    void save() throws IOException {
+        if (storeFile.isBlank()) {
+            return;
+        }
+        Path target = Path.of(storeFile);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+                Session session = entry.getValue();
+                writer.write(entry.getKey() + " " + session.personId() + " " + session.generation() + " "
+                        + session.secretHash() + " " + session.expiresAtMillis());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void register(String family, Session session) {
+        sessions.put(family, session);
+        sessionsByPerson.compute(session.personId(), (id, families) -> {
+            Set<String> result = families != null ? families : ConcurrentHashMap.newKeySet();
+            result.add(family);
+            return result;
+        });
+    }
+
+    private void unlink(String family, Long personId) {
+        sessionsByPerson.computeIfPresent(personId, (id, families) -> {
+            families.remove(family);
+            return families.isEmpty() ? null : families;
+        });
+    }
+
+    private String randomString(int bytes) {
+        byte[] buffer = new byte[bytes];
+        random.nextBytes(buffer);
+        return ENCODER.encodeToString(buffer);
+    }
+
+    private static String hash(String secret) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(secret.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record Rotation(Long personId, String refreshToken) {
+    }
+
+    private record Session(Long personId, int generation, String secretHash, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,352 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Список отозванных JWT-токенов, общий для всех узлов. Отзываются отдельные токены (по claim jti, при выходе)
+ * и все токены пользователя, выпущенные до заданного момента (при изменении или удалении учетной записи).
+ * <p>
+ * Отзывы записываются в таблицу token_revocation, каждый узел дочитывает новые строки по возрастанию id.
+ * В памяти они лежат в таблицах с открытой адресацией поверх AtomicLongArray: проверка токена -
+ * несколько чтений массива, без блокировок и без выделения памяти. Записи живут, пока не истекут
+ * токены, к которым они относятся, затем удаляются при очередной перестройке таблиц.
+ */
+@Component
+@DependsOnDatabaseInitialization
+public class TokenRevocationList {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    // Строки с меньшими id могут зафиксироваться позже строк с большими, поэтому опрос перечитывает хвост с запасом
+    private static final long POLL_OVERLAP = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxTokenLifetimeSeconds;
+    private final long maxTokenLifetimeMillis;
+
+    private volatile TokenTable tokens = new TokenTable(1024);
+    private volatile UserTable users = new UserTable(1024);
+    private long lastSeenId;
+
+    public TokenRevocationList(JdbcTemplate jdbcTemplate,
+                               @Value("${jwt.access-token-minutes:15}") long accessTokenMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxTokenLifetimeSeconds = TimeUnit.MINUTES.toSeconds(accessTokenMinutes);
+        this.maxTokenLifetimeMillis = TimeUnit.MINUTES.toMillis(accessTokenMinutes);
+    }
+
+    /**
+     * Проверка на горячем пути. tokenIdHigh и tokenIdLow - две половины jti (hasTokenId=false для токенов без jti),
+     * issuedAt - время выпуска в миллисекундах.
+     */
+    public boolean isRevoked(long personId, long issuedAt, boolean hasTokenId, long tokenIdHigh, long tokenIdLow) {
+        if (issuedAt < users.notBefore(personId)) {
+            return true;
+        }
+        return hasTokenId && tokens.contains(tokenIdHigh, tokenIdLow);
+    }
+
+    public boolean isRevoked(DecodedJWT decodedJWT) {
+        TokenId tokenId = TokenId.of(decodedJWT);
+        return isRevoked(tokenId.personId(), tokenId.issuedAt(), tokenId.hasTokenId(), tokenId.high(), tokenId.low());
+    }
+
+    /**
+     * Отзывает один токен до истечения его срока.
+     */
+    public void revokeToken(DecodedJWT decodedJWT) {
+        TokenId tokenId = TokenId.of(decodedJWT);
+        if (!tokenId.hasTokenId() || decodedJWT.getExpiresAtAsInstant() == null) {
+            return;
+        }
+        long expiresAt = decodedJWT.getExpiresAtAsInstant().getEpochSecond();
+        addToken(tokenId.high(), tokenId.low(), expiresAt);
+        jdbcTemplate.update("insert into token_revocation (jti_hi, jti_lo, expires_at) values (?, ?, ?)",
+                tokenId.high(), tokenId.low(), expiresAt);
+    }
+
+    /**
+     * Отзывает все токены пользователя, выпущенные до текущей миллисекунды включительно.
+     */
+    public void revokeUser(Long personId) {
+        long notBefore = System.currentTimeMillis() + 1;
+        addUser(personId, notBefore);
+        jdbcTemplate.update("insert into token_revocation (person_id, not_before, expires_at) values (?, ?, ?)",
+                personId, notBefore, TimeUnit.MILLISECONDS.toSeconds(notBefore) + maxTokenLifetimeSeconds + 1);
+    }
+
+    public int size() {
+        return tokens.size() + users.size();
+    }
+
+    @PostConstruct
+    void load() {
+        poll();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.poll-interval:PT2S}")
+    public void poll() {
+        long now = Instant.now().getEpochSecond();
+        try {
+            jdbcTemplate.query("""
+                            select id, jti_hi, jti_lo, person_id, not_before, expires_at from token_revocation
+                            where id > ? and expires_at > ? order by id""",
+                    resultSet -> {
+                        long id = resultSet.getLong(1);
+                        long personId = resultSet.getLong(4);
+                        if (resultSet.wasNull()) {
+                            addToken(resultSet.getLong(2), resultSet.getLong(3), resultSet.getLong(6));
+                        } else {
+                            addUser(personId, resultSet.getLong(5));
+                        }
+                        lastSeenId = Math.max(lastSeenId, id);
+                    },
+                    Math.max(0, lastSeenId - POLL_OVERLAP), now);
+        } catch (DataAccessException e) {
+            log.warn("Token revocation poll failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Удаляет истекшие отзывы из памяти и из таблицы. Под блокировкой только замена таблиц в памяти:
+     * addToken и addUser не ждут запрос к базе, а виртуальные потоки не закрепляются на время его выполнения.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:PT10M}")
+    public void purgeExpired() {
+        long now = Instant.now().getEpochSecond();
+        synchronized (this) {
+            tokens = tokens.copy(tokens.capacity(), now);
+            users = users.copy(users.capacity(), System.currentTimeMillis() - maxTokenLifetimeMillis);
+        }
+        jdbcTemplate.update("delete from token_revocation where expires_at <= ?", now);
+    }
+
+    private synchronized void addToken(long high, long low, long expiresAt) {
+        if (!tokens.put(high, low, expiresAt)) {
+            tokens = tokens.copy(tokens.capacity() * 2, Instant.now().getEpochSecond());
+            tokens.put(high, low, expiresAt);
+        }
+    }
+
+    private synchronized void addUser(long personId, long notBefore) {
+        if (!users.put(personId, notBefore)) {
+            users = users.copy(users.capacity() * 2, System.currentTimeMillis() - maxTokenLifetimeMillis);
+            users.put(personId, notBefore);
+        }
+    }
+
+    // Емкость - степень двойки, заполнение не больше половины с запасом на новые записи
+    private static int fit(int capacity, int live) {
+        while (capacity < (live + 1) * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Идентификатор токена: jti - 32 шестнадцатеричных символа, две половины по 64 бита.
+     * Время выпуска берется из iat_ms, для токенов без него - из iat.
+     */
+    public record TokenId(long personId, long issuedAt, boolean hasTokenId, long high, long low) {
+
+        public static TokenId of(DecodedJWT decodedJWT) {
+            Long personId = decodedJWT.getClaim("id").asLong();
+            Long issuedAtMillis = decodedJWT.getClaim("iat_ms").asLong();
+            Instant issuedAt = decodedJWT.getIssuedAtAsInstant();
+            String jti = decodedJWT.getId();
+            boolean hasTokenId = jti != null && jti.length() == 32;
+            long high = 0;
+            long low = 0;
+            if (hasTokenId) {
+                try {
+                    high = Long.parseUnsignedLong(jti, 0, 16, 16);
+                    low = Long.parseUnsignedLong(jti, 16, 32, 16);
+                } catch (NumberFormatException e) {
+                    hasTokenId = false;
+                }
+            }
+            return new TokenId(personId != null ? personId : 0,
+                    issuedAtMillis != null ? issuedAtMillis : issuedAt != null ? issuedAt.toEpochMilli() : 0,
+                    hasTokenId, high, low);
+        }
+    }
+
+    /**
+     * Множество jti: тройки (high, low, expiresAt), линейное пробирование, занятость слота - expiresAt != 0.
+     * expiresAt пишется последним, поэтому читатель, увидевший его, видит и ключ. Записи не удаляются на месте:
+     * истекшие отбрасываются при копировании.
+     */
+    private static final class TokenTable {
+
+        private final AtomicLongArray slots;
+        private final int capacity;
+        private int size;
+
+        private TokenTable(int capacity) {
+            this.capacity = capacity;
+            this.slots = new AtomicLongArray(capacity * 3);
+        }
+
+        private boolean contains(long high, long low) {
+            int mask = capacity - 1;
+            for (int i = index(high, low, mask), probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+                long expiresAt = slots.get(i * 3 + 2);
+                if (expiresAt == 0) {
+                    return false;
+                }
+                if (slots.get(i * 3) == high && slots.get(i * 3 + 1) == low) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Вызывается под блокировкой TokenRevocationList; false - таблица заполнена наполовину, нужна новая
+        private boolean put(long high, long low, long expiresAt) {
+            int mask = capacity - 1;
+            for (int i = index(high, low, mask); ; i = (i + 1) & mask) {
+                long current = slots.get(i * 3 + 2);
+                if (current == 0) {
+                    if (size * 2 >= capacity) {
+                        return false;
+                    }
+                    slots.set(i * 3, high);
+                    slots.set(i * 3 + 1, low);
+                    slots.set(i * 3 + 2, expiresAt);
+                    size++;
+                    return true;
+                }
+                if (slots.get(i * 3) == high && slots.get(i * 3 + 1) == low) {
+                    return true;
+                }
+            }
+        }
+
+        private TokenTable copy(int newCapacity, long now) {
+            int live = 0;
+            for (int i = 0; i < capacity; i++) {
+                if (slots.get(i * 3 + 2) > now) {
+                    live++;
+                }
+            }
+            TokenTable copy = new TokenTable(fit(newCapacity, live));
+            for (int i = 0; i < capacity; i++) {
+                long expiresAt = slots.get(i * 3 + 2);
+                if (expiresAt > now) {
+                    copy.put(slots.get(i * 3), slots.get(i * 3 + 1), expiresAt);
+                }
+            }
+            return copy;
+        }
+
+        private int capacity() {
+            return capacity;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private static int index(long high, long low, int mask) {
+            long hash = (high ^ low) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 40) & mask;
+        }
+    }
+
+    /**
+     * personId -> notBefore (миллисекунды): пары (key, value), занятость слота - key != 0.
+     */
+    private static final class UserTable {
+
+        private final AtomicLongArray slots;
+        private final int capacity;
+        private int size;
+
+        private UserTable(int capacity) {
+            this.capacity = capacity;
+            this.slots = new AtomicLongArray(capacity * 2);
+        }
+
+        private long notBefore(long personId) {
+            if (personId == 0) {
+                return 0;
+            }
+            int mask = capacity - 1;
+            for (int i = index(personId, mask), probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+                long key = slots.get(i * 2);
+                if (key == 0) {
+                    return 0;
+                }
+                if (key == personId) {
+                    return slots.get(i * 2 + 1);
+                }
+            }
+            return 0;
+        }
+
+        private boolean put(long personId, long notBefore) {
+            int mask = capacity - 1;
+            for (int i = index(personId, mask); ; i = (i + 1) & mask) {
+                long key = slots.get(i * 2);
+                if (key == 0) {
+                    if (size * 2 >= capacity) {
+                        return false;
+                    }
+                    slots.set(i * 2 + 1, notBefore);
+                    slots.set(i * 2, personId);
+                    size++;
+                    return true;
+                }
+                if (key == personId) {
+                    slots.set(i * 2 + 1, Math.max(slots.get(i * 2 + 1), notBefore));
+                    return true;
+                }
+            }
+        }
+
+        // Отзыв пользователя не нужен, когда все токены, выпущенные до notBefore, уже истекли
+        private UserTable copy(int newCapacity, long oldestLiveNotBefore) {
+            int live = 0;
+            for (int i = 0; i < capacity; i++) {
+                if (slots.get(i * 2) != 0 && slots.get(i * 2 + 1) > oldestLiveNotBefore) {
+                    live++;
+                }
+            }
+            UserTable copy = new UserTable(fit(newCapacity, live));
+            for (int i = 0; i < capacity; i++) {
+                long key = slots.get(i * 2);
+                long notBefore = slots.get(i * 2 + 1);
+                if (key != 0 && notBefore > oldestLiveNotBefore) {
+                    copy.put(key, notBefore);
+                }
+            }
+            return copy;
+        }
+
+        private int capacity() {
+            return capacity;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private static int index(long personId, int mask) {
+            long hash = personId * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 40) & mask;
+        }
+    }
+}
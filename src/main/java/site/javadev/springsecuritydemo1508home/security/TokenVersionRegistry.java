@@ -0,0 +1,29 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Версии токенов пользователей для режима без обращения к базе (jwt.stateless=true).
+ * Токен с версией меньше текущей считается отозванным. Таблица живет только в памяти узла:
+ * после перезапуска все версии снова равны нулю.
+ */
+@Component
+public class TokenVersionRegistry {
+
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+
+    public int currentVersion(Long personId) {
+        return versions.getOrDefault(personId, 0);
+    }
+
+    public boolean isCurrent(Long personId, int tokenVersion) {
+        return tokenVersion >= currentVersion(personId);
+    }
+
+    public void bump(Long personId) {
+        versions.merge(personId, 1, Integer::sum);
+    }
+}
@@ -0,0 +1,20 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+/**
+ * Промах поиска пользователя для AuthenticationManager. Сообщение постоянное, стек не заполняется:
+ * исключение нужно только ради контракта UserDetailsService, а DaoAuthenticationProvider
+ * все равно заменяет его на BadCredentialsException.
+ */
+public class UnknownUsernameException extends UsernameNotFoundException {
+
+    public UnknownUsernameException() {
+        super("User not found");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,239 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import site.javadev.springsecuritydemo1508home.datasource.ReadYourWrites;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фильтр Блума по именам из person_security. Если фильтр говорит, что имени нет, его точно нет в базе,
+ * и поиск пользователя завершается без запроса. Ответ "может быть" по-прежнему проверяется запросом.
+ * <p>
+ * Имена добавляются после фиксации транзакции, которая их записала. Перестройка читает имена из основной базы,
+ * а имена, зафиксированные во время перестройки, попадают и в строящийся фильтр, поэтому он не теряет записанное
+ * на этом узле. Удаленные имена из фильтра не убрать - они остаются ложными срабатываниями до следующей
+ * перестройки (security.username-filter.rebuild-interval).
+ * <p>
+ * Фильтр живет в памяти узла: имя, зарегистрированное на другом узле, появится здесь только после перестройки,
+ * а до того пользователь не сможет войти. Поэтому по умолчанию фильтр выключен (security.username-filter.enabled)
+ * и включается только при одном экземпляре приложения.
+ */
+@Component
+public class UsernameFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(UsernameFilter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReadYourWrites readYourWrites;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    // null, пока фильтр не построен: до этого все имена считаются возможными
+    private volatile BloomFilter current;
+    // Строящийся фильтр: имена, добавленные во время перестройки, попадают в оба
+    private volatile BloomFilter building;
+
+    private final LongAdder rejected = new LongAdder();
+    private volatile long lastRebuildMillis;
+
+    public UsernameFilter(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          ReadYourWrites readYourWrites,
+                          @Value("${security.username-filter.enabled:false}") boolean enabled,
+                          @Value("${security.username-filter.expected-insertions:1000000}") long expectedInsertions,
+                          @Value("${security.username-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readYourWrites = readYourWrites;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    // Фильтр построен и может отвечать "точно нет"; выключенный фильтр не строится никогда
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public boolean mightContain(String username) {
+        BloomFilter filter = current;
+        if (filter == null || username == null || filter.mightContain(username)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Добавляет имя; внутри транзакции - после ее фиксации, чтобы перестройка, начатая раньше,
+     * не пропустила имя, которого еще нет в ее снимке.
+     */
+    public void add(String username) {
+        if (username == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addNow(username);
+                }
+            });
+        } else {
+            addNow(username);
+        }
+    }
+
+    // Сначала строящийся фильтр, потом текущий: перестройка пишет current раньше, чем сбрасывает building,
+    // поэтому если building уже null, current - это новый фильтр. В обратном порядке имя могло попасть
+    // только в старый фильтр, подмененный между двумя чтениями
+    private void addNow(String username) {
+        BloomFilter next = building;
+        if (next != null) {
+            next.add(username);
+        }
+        BloomFilter filter = current;
+        if (filter != null && filter != next) {
+            filter.add(username);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${security.username-filter.rebuild-interval:PT6H}",
+            fixedDelayString = "${security.username-filter.rebuild-interval:PT6H}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Строит новый фильтр, читая имена из базы курсором, и атомарно подменяет им текущий.
+     * Размер берется с двукратным запасом от числа пользователей, чтобы фильтр выдерживал рост до следующей перестройки.
+     */
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+
+        Long count = jdbcTemplate.queryForObject("select count(*) from person_security", Long.class);
+        BloomFilter next = new BloomFilter(Math.max(expectedInsertions, 2 * (count != null ? count : 0)), falsePositiveRate);
+        building = next;
+        try {
+            // В PostgreSQL fetchSize работает как курсор только внутри транзакции. Чтение - из основной базы:
+            // на отстающей реплике нет имен, добавленных в текущий фильтр до начала перестройки
+            readYourWrites.onPrimary(() -> readOnlyTransaction.execute(status -> {
+                JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+                streaming.setFetchSize(10_000);
+                streaming.query("select username from person_security",
+                        (RowCallbackHandler) resultSet -> next.add(resultSet.getString(1)));
+                return null;
+            }));
+            current = next;
+        } finally {
+            building = null;
+        }
+
+        lastRebuildMillis = (System.nanoTime() - started) / 1_000_000;
+        log.info("Username filter rebuilt: {} users, {} KiB, {} hash functions, {} ms",
+                count, next.sizeInBytes() / 1024, next.hashFunctions, lastRebuildMillis);
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long sizeInBytes() {
+        BloomFilter filter = current;
+        return filter != null ? filter.sizeInBytes() : 0;
+    }
+
+    public long lastRebuildMillis() {
+        return lastRebuildMillis;
+    }
+
+    private static final class BloomFilter {
+
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashFunctions;
+
+        private BloomFilter(long expectedInsertions, double falsePositiveRate) {
+            // m = -n ln p / (ln 2)^2, k = m / n ln 2
+            long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (bits + 63) / 64));
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = (long) wordCount * 64;
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        private void add(String value) {
+            long hash = hash(value);
+            long h1 = hash;
+            long h2 = mix(hash ^ 0x9E3779B97F4A7C15L);
+            for (int i = 0; i < hashFunctions; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                long mask = 1L << bit;
+                int index = (int) (bit >>> 6);
+                if ((words.get(index) & mask) == 0) {
+                    words.getAndAccumulate(index, mask, (word, m) -> word | m);
+                }
+            }
+        }
+
+        private boolean mightContain(String value) {
+            long hash = hash(value);
+            long h1 = hash;
+            long h2 = mix(hash ^ 0x9E3779B97F4A7C15L);
+            for (int i = 0; i < hashFunctions; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long sizeInBytes() {
+            return bitCount / 8;
+        }
+
+        // FNV-1a по символам строки с перемешиванием результата (финализатор MurmurHash3)
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb93fe53ec5a3L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный кэш уже проверенных JWT-токенов.
+ * Повторный запрос с тем же токеном не проверяет подпись и не ходит в базу за пользователем.
+ * Ключ - значение заголовка Authorization целиком, чтобы попадание в кэш обходилось без выделения подстроки с токеном.
+ * Поиск идет по хэшу ключа, а совпадение подтверждается полным сравнением строк,
+ * поэтому подобранная коллизия хэша не может подменить чужую запись.
+ * Отзыв токена проверяется и для записей из кэша, так что отзыв на другом узле действует без сброса кэша.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final int maxSize;
+    private final TokenRevocationList tokenRevocationList;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-size:10000}") int maxSize,
+                              TokenRevocationList tokenRevocationList) {
+        this.maxSize = maxSize;
+        this.tokenRevocationList = tokenRevocationList;
+    }
+
+    public Authentication get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        TokenRevocationList.TokenId id = entry.tokenId();
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()
+                || tokenRevocationList.isRevoked(id.personId(), id.issuedAt(), id.hasTokenId(), id.high(), id.low())) {
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.authentication();
+    }
+
+    public void put(String key, Authentication authentication, DecodedJWT decodedJWT) {
+        if (maxSize <= 0 || decodedJWT.getExpiresAtAsInstant() == null) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(key, new Entry(authentication.getName(), authentication,
+                decodedJWT.getExpiresAtAsInstant().toEpochMilli(), TokenRevocationList.TokenId.of(decodedJWT)));
+    }
+
+    /**
+     * Удаляет все токены пользователя, например после изменения или удаления его учетной записи.
+     */
+    public void invalidateUser(String username) {
+        if (username == null) {
+            return;
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (username.equals(iterator.next().username())) {
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Сначала выбрасываем просроченные токены, затем, если места все еще нет, освобождаем десятую часть кэша
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAtMillis() <= now) {
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+
+        int target = maxSize - Math.max(1, maxSize / 10);
+        iterator = entries.values().iterator();
+        while (entries.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private record Entry(String username, Authentication authentication, long expiresAtMillis,
+                         TokenRevocationList.TokenId tokenId) {
+    }
+}
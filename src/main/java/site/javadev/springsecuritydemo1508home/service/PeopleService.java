@@ -1,72 +1,250 @@
 package site.javadev.springsecuritydemo1508home.service;
 
-import org.modelmapper.ModelMapper;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.data.domain.Limit;
+import site.javadev.springsecuritydemo1508home.datasource.ReadYourWrites;
 import site.javadev.springsecuritydemo1508home.dto.PersonDTO;
+import site.javadev.springsecuritydemo1508home.dto.PersonPageDTO;
+import site.javadev.springsecuritydemo1508home.dto.PersonSummaryDTO;
 import site.javadev.springsecuritydemo1508home.model.Person;
 import site.javadev.springsecuritydemo1508home.repositories.PeopleRepository;
+import site.javadev.springsecuritydemo1508home.security.BoundedPasswordEncoder;
+import site.javadev.springsecuritydemo1508home.security.PasswordHashingBusyException;
+import site.javadev.springsecuritydemo1508home.security.RefreshTokenStore;
+import site.javadev.springsecuritydemo1508home.security.TokenRevocationList;
+import site.javadev.springsecuritydemo1508home.security.TokenVersionRegistry;
+import site.javadev.springsecuritydemo1508home.security.UsernameFilter;
+import site.javadev.springsecuritydemo1508home.security.VerifiedTokenCache;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
 public class PeopleService {
 
+    private static final Logger log = LoggerFactory.getLogger(PeopleService.class);
+
     private final PeopleRepository peopleRepository;
-    private final PasswordEncoder passwordEncoder;
-    private final ModelMapper modelMapper;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final PersonMapper personMapper;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final UsernameFilter usernameFilter;
+    private final RefreshTokenStore refreshTokenStore;
+    private final TokenRevocationList tokenRevocationList;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadYourWrites readYourWrites;
 
     @Autowired
-    public PeopleService(PeopleRepository peopleRepository, PasswordEncoder passwordEncoder, ModelMapper modelMapper) {
+    public PeopleService(PeopleRepository peopleRepository, BoundedPasswordEncoder passwordEncoder, PersonMapper personMapper,
+                         VerifiedTokenCache verifiedTokenCache, TokenVersionRegistry tokenVersionRegistry,
+                         UsernameFilter usernameFilter, RefreshTokenStore refreshTokenStore,
+                         TokenRevocationList tokenRevocationList,
+                         PlatformTransactionManager transactionManager, ReadYourWrites readYourWrites) {
         this.peopleRepository = peopleRepository;
         this.passwordEncoder = passwordEncoder;
-        this.modelMapper = modelMapper;
+        this.personMapper = personMapper;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.usernameFilter = usernameFilter;
+        this.refreshTokenStore = refreshTokenStore;
+        this.tokenRevocationList = tokenRevocationList;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readYourWrites = readYourWrites;
     }
 
+    /**
+     * Сохраняет нового пользователя одной вставкой. Уникальность имени обеспечивает
+     * ограничение person_security_username_uq, и занятое имя обычно отклоняет оно. Только при построенном фильтре
+     * имен имя, которое он считает возможным, проверяется по индексу на основной базе еще до BCrypt; новые имена
+     * фильтр пропускает без запроса. Одновременную регистрацию того же имени эта проверка не ловит.
+     */
     public void savePerson(Person person) {
+        String username = person.getUsername();
+        if (usernameFilter.isReady() && usernameFilter.mightContain(username)
+                && readYourWrites.onPrimary(() -> peopleRepository.existsByUsername(username))) {
+            throw new UsernameAlreadyExistsException(username);
+        }
         person.setPassword(passwordEncoder.encode(person.getPassword()));
         person.setRole("ROLE_USER");
-        peopleRepository.save(person);
+        try {
+            peopleRepository.save(person);
+        } catch (DataIntegrityViolationException e) {
+            throw translateUsernameConflict(e, person.getUsername());
+        }
+        usernameFilter.add(person.getUsername());
+        readYourWrites.written(person.getId(), person.getUsername());
     }
 
     public Optional<Person> findByUsername(String username) {
-        return peopleRepository.findByUsername(username);
+        return readYourWrites.read(null, username, () -> peopleRepository.findByUsername(username));
     }
 
     public Optional<Person> findById(Long id) {
-        return peopleRepository.findById(id);
+        return readYourWrites.read(id, null, () -> peopleRepository.findById(id));
     }
 
+    public PersonPageDTO findPage(long afterId, int limit, String usernamePrefix, String emailDomain,
+                                  Integer bornFrom, Integer bornTo) {
+        String usernamePattern = usernamePrefix == null || usernamePrefix.isEmpty() ? null
+                : usernamePrefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        String domain = emailDomain == null || emailDomain.isEmpty() ? null : emailDomain.toLowerCase(Locale.ROOT);
+
+        List<PersonSummaryDTO> items = peopleRepository.findPage(afterId, usernamePattern, domain,
+                bornFrom, bornTo, Limit.of(limit));
+        Long nextAfterId = items.size() < limit ? null : items.get(items.size() - 1).getId();
+        return new PersonPageDTO(items, nextAfterId);
+    }
+
+    /**
+     * Изменяет пользователя через сессию: строка блокируется, в сущность переносятся только отличающиеся поля,
+     * и при фиксации Hibernate пишет только их (@DynamicUpdate) и сам обновляет кэш второго уровня.
+     * Если ничего не изменилось, записи в базу нет и токены пользователя остаются действительными.
+     * Пароль, которого нет в запросе, не меняется. Переданный пароль хэшируется, только если пользователь
+     * существует и пароль отличается от текущего, и до транзакции, чтобы не держать соединение на время BCrypt.
+     */
     public boolean updatePerson(Long id, PersonDTO updatedPerson) {
-        return peopleRepository.findById(id)
+        String password = updatedPerson.getPassword();
+        String newPasswordHash = null;
+        if (password != null && !password.isEmpty()) {
+            Optional<Person> current = readYourWrites.onPrimary(() -> peopleRepository.findById(id));
+            if (current.isEmpty()) {
+                return false;
+            }
+            if (!passwordEncoder.matches(password, current.get().getPassword())) {
+                newPasswordHash = passwordEncoder.encode(password);
+            }
+        }
+
+        String passwordHash = newPasswordHash;
+        UpdateResult result;
+        try {
+            result = transactionTemplate.execute(status -> peopleRepository.findForUpdate(id)
+                    .map(person -> {
+                        String previousUsername = person.getUsername();
+                        boolean changed = false;
+                        if (!Objects.equals(person.getUsername(), updatedPerson.getUsername())) {
+                            person.setUsername(updatedPerson.getUsername());
+                            changed = true;
+                        }
+                        if (!Objects.equals(person.getEmail(), updatedPerson.getEmail())) {
+                            person.setEmail(updatedPerson.getEmail());
+                            changed = true;
+                        }
+                        if (!Objects.equals(person.getYearOfBirth(), updatedPerson.getYearOfBirth())) {
+                            person.setYearOfBirth(updatedPerson.getYearOfBirth());
+                            changed = true;
+                        }
+                        if (passwordHash != null) {
+                            person.setPassword(passwordHash);
+                            changed = true;
+                        }
+                        // flush через репозиторий: нарушение уникальности имени приходит как DataIntegrityViolationException
+                        peopleRepository.flush();
+                        return new UpdateResult(previousUsername, changed);
+                    })
+                    .orElse(null));
+        } catch (DataIntegrityViolationException e) {
+            throw translateUsernameConflict(e, updatedPerson.getUsername());
+        }
+
+        if (result == null) {
+            return false;
+        }
+        if (result.changed()) {
+            usernameFilter.add(updatedPerson.getUsername());
+            readYourWrites.written(id, result.previousUsername(), updatedPerson.getUsername());
+            revokeTokens(id, result.previousUsername());
+        }
+        return true;
+    }
+
+    /**
+     * Удаляет пользователя через сессию, чтобы Hibernate удалил его и из кэша второго уровня
+     * под своей блокировкой записи; имя, нужное для отзыва токенов, читается в той же транзакции.
+     */
+    public boolean deletePerson(Long id) {
+        String username = transactionTemplate.execute(status -> peopleRepository.findForUpdate(id)
                 .map(person -> {
-                    person.setUsername(updatedPerson.getUsername());
-                    person.setEmail(updatedPerson.getEmail());
-                    person.setYearOfBirth(updatedPerson.getYearOfBirth());
-                    if (!updatedPerson.getPassword().isEmpty()) {
-                        person.setPassword(passwordEncoder.encode(updatedPerson.getPassword()));
-                    }
-                    peopleRepository.save(person);
-                    return true;
+                    peopleRepository.delete(person);
+                    return person.getUsername();
                 })
-                .orElse(false);
+                .orElse(null));
+        if (username == null) {
+            return false;
+        }
+        readYourWrites.written(id, username);
+        revokeTokens(id, username);
+        return true;
     }
 
-    public boolean deletePerson(Long id) {
-        if (peopleRepository.existsById(id)) {
-            peopleRepository.deleteById(id);
-            return true;
+    private record UpdateResult(String previousUsername, boolean changed) {
+    }
+
+    private void revokeTokens(Long id, String username) {
+        tokenVersionRegistry.bump(id);
+        verifiedTokenCache.invalidateUser(username);
+        refreshTokenStore.revokeAll(id);
+        tokenRevocationList.revokeUser(id);
+    }
+
+    /**
+     * Если пароль захэширован устаревшим алгоритмом или стоимостью, перехэширует его в фоне.
+     * Вызывается после успешного входа, когда известен исходный пароль.
+     */
+    public void upgradePasswordIfNeeded(Person person, String rawPassword) {
+        String currentHash = person.getPassword();
+        if (person.getId() == null || currentHash == null || !passwordEncoder.upgradeEncoding(currentHash)) {
+            return;
+        }
+
+        try {
+            passwordEncoder.encodeAsync(rawPassword)
+                    .thenAccept(newHash -> transactionTemplate.executeWithoutResult(status ->
+                            // Хэш меняется, только если пароль не успели сменить с момента чтения
+                            peopleRepository.findForUpdate(person.getId())
+                                    .filter(current -> currentHash.equals(current.getPassword()))
+                                    .ifPresent(current -> current.setPassword(newHash))))
+                    .exceptionally(e -> {
+                        log.warn("Password upgrade failed for user {}", person.getId(), e);
+                        return null;
+                    });
+        } catch (PasswordHashingBusyException e) {
+            // Очередь занята - перехэшируем при одном из следующих входов
+            log.debug("Password upgrade for user {} postponed: hashing queue is full", person.getId());
+        }
+    }
+
+    private static RuntimeException translateUsernameConflict(DataIntegrityViolationException e, String username) {
+        return isUsernameConflict(e) ? new UsernameAlreadyExistsException(username) : e;
+    }
+
+    // Нарушено ограничение уникальности имени (person_security_username_uq)
+    static boolean isUsernameConflict(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation
+                    && Person.USERNAME_CONSTRAINT.equalsIgnoreCase(violation.getConstraintName())) {
+                return true;
+            }
         }
         return false;
     }
 
     public Person convertDTOToPerson(PersonDTO personDTO) {
-        return modelMapper.map(personDTO, Person.class);
+        return personMapper.toPerson(personDTO);
     }
 
     public PersonDTO convertPersonToDTO(Person person) {
-        return modelMapper.map(person, PersonDTO.class);
+        return personMapper.toDTO(person);
     }
 
     // Новый метод для регистрации, который принимает DTO, преобразует в сущность и сохраняет
@@ -0,0 +1,273 @@
+package site.javadev.springsecuritydemo1508home.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.groups.Default;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import site.javadev.springsecuritydemo1508home.dto.PersonDTO;
+import site.javadev.springsecuritydemo1508home.dto.PersonImportResultDTO;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.repositories.PeopleRepository;
+import site.javadev.springsecuritydemo1508home.security.AuditLog;
+import site.javadev.springsecuritydemo1508home.security.BoundedPasswordEncoder;
+import site.javadev.springsecuritydemo1508home.security.UsernameFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Массовый импорт пользователей из NDJSON или CSV (username,password,email[,yearOfBirth]).
+ * CSV - по RFC 4180 в пределах строки: поле в двойных кавычках может содержать запятые, кавычка внутри
+ * такого поля удваивается; перевод строки внутри поля не поддерживается. Строка с другим числом столбцов
+ * отклоняется как INVALID.
+ * Строки обрабатываются пачками: одна проверка существующих имен на пачку,
+ * параллельное хэширование паролей и пакетная вставка (hibernate.jdbc.batch_size).
+ * Если имя заняли после проверки (параллельная регистрация), пачка повторяется построчно,
+ * и строка с занятым именем получает статус EXISTS.
+ * Результат по каждой строке пишется в выходной поток в формате NDJSON сразу после обработки пачки
+ * и в журнал аудита (событие IMPORT, actor - администратор, запустивший импорт).
+ */
+@Service
+public class PersonImportService {
+
+    private final PeopleRepository peopleRepository;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final UsernameFilter usernameFilter;
+    private final AuditLog auditLog;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final int chunkSize;
+    private final int hashParallelism;
+
+    public PersonImportService(PeopleRepository peopleRepository,
+                               BoundedPasswordEncoder passwordEncoder,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               Validator validator,
+                               UsernameFilter usernameFilter,
+                               AuditLog auditLog,
+                               @Value("${import.chunk-size:500}") int chunkSize,
+                               @Value("${import.hash-parallelism:0}") int hashParallelism) {
+        this.peopleRepository = peopleRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.usernameFilter = usernameFilter;
+        this.auditLog = auditLog;
+        this.chunkSize = chunkSize;
+        // По умолчанию импорт занимает не больше половины пула хэширования, чтобы вход продолжал работать
+        this.hashParallelism = hashParallelism > 0 ? hashParallelism : Math.max(1, passwordEncoder.poolSize() / 2);
+    }
+
+    public void importPeople(InputStream input, boolean csv, OutputStream output,
+                             String actor, String clientAddress) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        long lineNumber = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (csv && lineNumber == 1 && line.startsWith("username"))) {
+                continue;
+            }
+            chunk.add(parse(lineNumber, line, csv));
+            if (chunk.size() >= chunkSize) {
+                processChunk(chunk, output, actor, clientAddress);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            processChunk(chunk, output, actor, clientAddress);
+        }
+    }
+
+    private void processChunk(List<Row> chunk, OutputStream output, String actor, String clientAddress)
+            throws IOException {
+        Set<String> usernames = new HashSet<>();
+        for (Row row : chunk) {
+            if (row.error == null) {
+                usernames.add(row.person.getUsername());
+            }
+        }
+        Set<String> existing = usernames.isEmpty() ? Set.of() : peopleRepository.findExistingUsernames(usernames);
+
+        List<Row> accepted = new ArrayList<>();
+        Set<String> seenInChunk = new HashSet<>();
+        for (Row row : chunk) {
+            if (row.error != null) {
+                continue;
+            }
+            String username = row.person.getUsername();
+            if (existing.contains(username) || !seenInChunk.add(username)) {
+                row.status = "EXISTS";
+                row.error = "User already exists";
+            } else {
+                accepted.add(row);
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            List<String> rawPasswords = new ArrayList<>(accepted.size());
+            for (Row row : accepted) {
+                rawPasswords.add(row.person.getPassword());
+            }
+            List<String> hashes = passwordEncoder.encodeAll(rawPasswords, hashParallelism);
+
+            try {
+                insert(accepted, hashes);
+                accepted.forEach(row -> row.status = "CREATED");
+            } catch (DataIntegrityViolationException e) {
+                // Пачка откатилась целиком: повторяем построчно, чтобы сохранить остальные строки
+                for (int i = 0; i < accepted.size(); i++) {
+                    Row row = accepted.get(i);
+                    try {
+                        insert(List.of(row), List.of(hashes.get(i)));
+                        row.status = "CREATED";
+                    } catch (DataIntegrityViolationException rowError) {
+                        if (!PeopleService.isUsernameConflict(rowError)) {
+                            throw rowError;
+                        }
+                        row.status = "EXISTS";
+                        row.error = "User already exists";
+                    }
+                }
+            }
+        }
+
+        for (Row row : chunk) {
+            String username = row.person != null ? row.person.getUsername() : null;
+            // Исходы как у регистрации: success, exists, invalid
+            String outcome = "CREATED".equals(row.status) ? "success" : row.status.toLowerCase(Locale.ROOT);
+            auditLog.record(AuditLog.Event.IMPORT, outcome, null, username, actor, clientAddress);
+            output.write(objectMapper.writeValueAsBytes(
+                    new PersonImportResultDTO(row.line, username, row.status, row.error)));
+            output.write('\n');
+        }
+        output.flush();
+    }
+
+    // Вставка и flush идут через репозиторий: его прокси переводит нарушение ограничения Hibernate
+    // в DataIntegrityViolationException, по которому пачка повторяется построчно
+    private void insert(List<Row> rows, List<String> hashes) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Person> people = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                PersonDTO personDTO = rows.get(i).person;
+                Person person = new Person();
+                person.setUsername(personDTO.getUsername());
+                person.setPassword(hashes.get(i));
+                person.setYearOfBirth(personDTO.getYearOfBirth());
+                person.setEmail(personDTO.getEmail());
+                person.setRole("ROLE_USER");
+                usernameFilter.add(person.getUsername());
+                people.add(person);
+            }
+            peopleRepository.saveAll(people);
+            peopleRepository.flush();
+            entityManager.clear();
+        });
+    }
+
+    private Row parse(long lineNumber, String line, boolean csv) {
+        PersonDTO person;
+        try {
+            person = csv ? parseCsv(line) : objectMapper.readValue(line, PersonDTO.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return Row.invalid(lineNumber, null, "Malformed line");
+        }
+
+        Set<ConstraintViolation<PersonDTO>> violations = validator.validate(person, Default.class, PersonDTO.PasswordRequired.class);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<PersonDTO> violation = violations.iterator().next();
+            return Row.invalid(lineNumber, person, violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        if (person.getPassword().length() < 4) {
+            return Row.invalid(lineNumber, person, "Password must be at least 4 characters");
+        }
+        return new Row(lineNumber, person);
+    }
+
+    private static PersonDTO parseCsv(String line) {
+        List<String> columns = splitCsv(line);
+        if (columns.size() != 3 && columns.size() != 4) {
+            throw new IllegalArgumentException("Expected username,password,email[,yearOfBirth]");
+        }
+        Integer yearOfBirth = columns.size() > 3 && !columns.get(3).isBlank() ? Integer.valueOf(columns.get(3).trim()) : null;
+        return new PersonDTO(columns.get(0).trim(), columns.get(1), yearOfBirth, columns.get(2).trim());
+    }
+
+    // Поля через запятую; поле в кавычках читается как есть, "" внутри него - одна кавычка
+    static List<String> splitCsv(String line) {
+        List<String> columns = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == ',') {
+                columns.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        columns.add(field.toString());
+        return columns;
+    }
+
+    private static final class Row {
+        private final long line;
+        private final PersonDTO person;
+        private String status;
+        private String error;
+
+        private Row(long line, PersonDTO person) {
+            this.line = line;
+            this.person = person;
+        }
+
+        private static Row invalid(long line, PersonDTO person, String error) {
+            Row row = new Row(line, person);
+            row.status = "INVALID";
+            row.error = error;
+            return row;
+        }
+    }
+}
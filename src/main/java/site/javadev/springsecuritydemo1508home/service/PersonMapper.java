@@ -0,0 +1,26 @@
+package site.javadev.springsecuritydemo1508home.service;
+
+import org.springframework.stereotype.Component;
+import site.javadev.springsecuritydemo1508home.dto.PersonDTO;
+import site.javadev.springsecuritydemo1508home.model.Person;
+
+/**
+ * Преобразование между PersonDTO и Person без рефлексии.
+ * Поля совпадают с прежним сопоставлением ModelMapper по именам; соответствие проверяет PersonMapperTest.
+ */
+@Component
+public class PersonMapper {
+
+    public Person toPerson(PersonDTO personDTO) {
+        Person person = new Person();
+        person.setUsername(personDTO.getUsername());
+        person.setPassword(personDTO.getPassword());
+        person.setYearOfBirth(personDTO.getYearOfBirth());
+        person.setEmail(personDTO.getEmail());
+        return person;
+    }
+
+    public PersonDTO toDTO(Person person) {
+        return new PersonDTO(person.getUsername(), person.getPassword(), person.getYearOfBirth(), person.getEmail());
+    }
+}
@@ -0,0 +1,8 @@
+package site.javadev.springsecuritydemo1508home.service;
+
+public class UsernameAlreadyExistsException extends RuntimeException {
+
+    public UsernameAlreadyExistsException(String username) {
+        super("User with name " + username + " already exists");
+    }
+}
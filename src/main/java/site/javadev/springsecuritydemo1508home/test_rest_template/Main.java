@@ -1,28 +1,24 @@
 package site.javadev.springsecuritydemo1508home.test_rest_template;
 
-import org.springframework.http.HttpEntity;
-import org.springframework.web.client.RestTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import site.javadev.springsecuritydemo1508home.client.OutboundClient;
 import site.javadev.springsecuritydemo1508home.test_rest_template.model.User;
 
+import java.net.URI;
+import java.time.Duration;
+
 public class Main {
     public static void main(String[] args) {
-        RestTemplate restTemplate = new RestTemplate();
-
-        String url = "https://reqres.in/api/users/1";
-
+        // В приложении OutboundClient - бин; здесь создаем его вручную с настройками по умолчанию
+        OutboundClient client = new OutboundClient(new ObjectMapper(), new SimpleMeterRegistry(),
+                Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(1), 32);
 
-//        String response = restTemplate.getForObject(url, String.class);
-//        System.out.println(response);
-
-//        Map<String, String> jsonToSend = new HashMap<>();
-//        jsonToSend.put("name", "NikolayL");
-//        jsonToSend.put("job", "devops");
+        URI url = URI.create("https://reqres.in/api/users/1");
 
         User user = new User("Alex", "Tech artist");
 
-        HttpEntity<User> entity = new HttpEntity<>(user);
-
-        User response = restTemplate.postForObject(url, entity, User.class);
+        User response = client.postJson(url, user, User.class);
 
         System.out.println(response);
 
@@ -1,30 +1,29 @@
 package site.javadev.springsecuritydemo1508home.test_webclient;
 
-import org.springframework.http.MediaType;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
-import site.javadev.springsecuritydemo1508home.test_rest_template.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import site.javadev.springsecuritydemo1508home.client.OutboundClient;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 public class Main {
     public static void main(String[] args) {
 
+        // В приложении OutboundClient - бин; здесь создаем его вручную с настройками по умолчанию
+        OutboundClient client = new OutboundClient(new ObjectMapper(), new SimpleMeterRegistry(),
+                Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(1), 32);
 
-        String url = "https://reqres.in";
-
-        User user = new User("Alex", "Tech artist");
-
-
-        // Создаем экземпляр WebClient
-        WebClient webClient = WebClient.create("https://reqres.in");
-
-        // Отправляем GET-запрос и получаем ответ
-        Mono<String> responseMono = webClient.get()
-                .accept(MediaType.APPLICATION_JSON)
-                .retrieve()
-                .bodyToMono(String.class);
+        // Отправляем GET-запрос и выводим ответ в консоль
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create("https://reqres.in"))
+                .header("Accept", "application/json")
+                .GET()
+                .build());
 
-        // Подписываемся на результат и выводим его в консоль
-        responseMono.subscribe(responseBody -> System.out.println(responseBody));
+        System.out.println(new String(response.body(), StandardCharsets.UTF_8));
 
     }
 }
@@ -5,42 +5,188 @@ import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.security.PersonDetails;
+import site.javadev.springsecuritydemo1508home.security.TokenVersionRegistry;
 
 import java.time.ZonedDateTime;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 public class JWTUtil {
 
+    public static final String BEARER_PREFIX = "Bearer ";
+
     @Value("${jwt.secret}")
     private String secret;
+    @Value("${jwt.access-token-minutes:15}")
+    private long accessTokenMinutes;
+    @Value("${jwt.kid:primary}")
+    private String kid;
+    // Ключи, которыми подписаны еще не истекшие токены: kid1=secret1,kid2=secret2
+    @Value("${jwt.previous-keys:}")
+    private String previousKeys;
     private String ISSUER = "Maxima School";
     private String SUBJECT = "JWT with user details";
 
-    public String generateToken(String username) {
+    private final TokenVersionRegistry tokenVersionRegistry;
+
+    // Подменяется целиком при ротации, поэтому чтение на горячем пути обходится без блокировок
+    private volatile SigningKeys signingKeys;
+
+    public JWTUtil(TokenVersionRegistry tokenVersionRegistry) {
+        this.tokenVersionRegistry = tokenVersionRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        Map<String, String> secrets = new HashMap<>();
+        for (String pair : previousKeys.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                secrets.put(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+            }
+        }
+        secrets.put(kid, secret);
+        rotateKeys(kid, secrets);
+    }
+
+    /**
+     * Заменяет набор ключей. Новые токены подписываются ключом activeKid,
+     * проверяются токены, подписанные любым из переданных ключей.
+     */
+    public void rotateKeys(String activeKid, Map<String, String> secrets) {
+        String activeSecret = secrets.get(activeKid);
+        if (activeSecret == null) {
+            throw new IllegalArgumentException("No secret for active key id: " + activeKid);
+        }
+
+        Map<String, JWTVerifier> verifiers = new HashMap<>();
+        secrets.forEach((keyId, keySecret) -> verifiers.put(keyId, JWT.require(Algorithm.HMAC256(keySecret))
+                .withIssuer(ISSUER)
+                .withSubject(SUBJECT)
+                .build()));
+
+        signingKeys = new SigningKeys(activeKid, Algorithm.HMAC256(activeSecret), Map.copyOf(verifiers));
+    }
 
-        Date expirationDate = Date.from(ZonedDateTime.now().plusMinutes(60).toInstant());
+    /**
+     * Кроме имени пользователя кладет в токен id, роль и версию токена,
+     * чтобы в режиме jwt.stateless фильтр мог обойтись без запроса к базе.
+     * Токен короткоживущий (jwt.access-token-minutes), продлевается через refresh-токен.
+     * Claim jti позволяет отозвать отдельный токен до истечения срока (TokenRevocationList),
+     * iat_ms - время выпуска с точностью до миллисекунды: iat хранит секунды, и по нему нельзя отличить
+     * токен, выпущенный сразу после отзыва всех токенов пользователя, от отозванного.
+     */
+    public String generateToken(Person person) {
 
+        long issuedAtMillis = System.currentTimeMillis();
+        Date expirationDate = Date.from(ZonedDateTime.now().plusMinutes(accessTokenMinutes).toInstant());
+        SigningKeys keys = signingKeys;
 
         return JWT.create()
+                .withKeyId(keys.activeKid())
+                .withJWTId(newTokenId())
                 .withSubject(SUBJECT)
-                .withClaim("username", username)
-                .withIssuedAt(new Date())
+                .withClaim("username", person.getUsername())
+                .withClaim("id", person.getId())
+                .withClaim("role", person.getRole())
+                .withClaim("ver", tokenVersionRegistry.currentVersion(person.getId()))
+                .withIssuedAt(new Date(issuedAtMillis))
+                .withClaim("iat_ms", issuedAtMillis)
                 .withIssuer(ISSUER)
                 .withExpiresAt(expirationDate)
-                .sign(Algorithm.HMAC256(secret));
+                .sign(keys.algorithm());
+    }
+
+    // jti - два случайных long в шестнадцатеричном виде, TokenRevocationList хранит их без строк
+    private static String newTokenId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        HexFormat hex = HexFormat.of();
+        return hex.toHexDigits(random.nextLong()) + hex.toHexDigits(random.nextLong());
+    }
+
+    /**
+     * Заголовок Authorization со схемой Bearer (без учета регистра, RFC 6750). Строка не копируется.
+     */
+    public static boolean isBearer(String authHeader) {
+        return authHeader != null && authHeader.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length());
+    }
+
+    // Есть ли после схемы что-то кроме пробелов
+    public static boolean hasBearerToken(String authHeader) {
+        for (int i = BEARER_PREFIX.length(); i < authHeader.length(); i++) {
+            if (!Character.isWhitespace(authHeader.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String bearerToken(String authHeader) {
+        return authHeader.substring(BEARER_PREFIX.length());
     }
 
     public String validateToken(String token) throws JWTVerificationException {
-        JWTVerifier verifier = JWT.require(Algorithm.HMAC256(secret))
-                .withIssuer(ISSUER)
-                .withSubject(SUBJECT)
-                .build();
+        return getUsername(verifyToken(token));
+    }
+
+    public DecodedJWT verifyToken(String token) throws JWTVerificationException {
+        return verify(decode(token));
+    }
+
+    // Разбор без проверки подписи; отдельно от verify, чтобы фильтр мог измерять фазы по отдельности
+    public DecodedJWT decode(String token) throws JWTVerificationException {
+        return JWT.decode(token);
+    }
 
-        DecodedJWT decodedJWT = verifier.verify(token);
+    public DecodedJWT verify(DecodedJWT decodedJWT) throws JWTVerificationException {
+        SigningKeys keys = signingKeys;
+
+        // Токены, выпущенные до появления kid, проверяются активным ключом
+        String keyId = decodedJWT.getKeyId() != null ? decodedJWT.getKeyId() : keys.activeKid();
+        JWTVerifier verifier = keys.verifiers().get(keyId);
+        if (verifier == null) {
+            throw new JWTVerificationException("Unknown key id: " + keyId);
+        }
+
+        return verifier.verify(decodedJWT);
+    }
+
+    public String getUsername(DecodedJWT decodedJWT) {
         return decodedJWT.getClaim("username").asString();
     }
 
+    /**
+     * Восстанавливает пользователя из claims токена. Возвращает null для токенов без id и роли,
+     * выпущенных до появления этих claims.
+     */
+    public PersonDetails getPersonDetails(DecodedJWT decodedJWT) throws JWTVerificationException {
+        Long id = decodedJWT.getClaim("id").asLong();
+        String role = decodedJWT.getClaim("role").asString();
+        Integer version = decodedJWT.getClaim("ver").asInt();
+        if (id == null || role == null || version == null) {
+            return null;
+        }
+        if (!tokenVersionRegistry.isCurrent(id, version)) {
+            throw new JWTVerificationException("Token has been revoked");
+        }
+
+        Person person = new Person();
+        person.setId(id);
+        person.setUsername(getUsername(decodedJWT));
+        person.setRole(role);
+        return new PersonDetails(person);
+    }
+
+    private record SigningKeys(String activeKid, Algorithm algorithm, Map<String, JWTVerifier> verifiers) {
+    }
+
 }
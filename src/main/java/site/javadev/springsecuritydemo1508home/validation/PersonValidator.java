@@ -1,35 +1,24 @@
 package site.javadev.springsecuritydemo1508home.validation;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
 import site.javadev.springsecuritydemo1508home.model.Person;
-import site.javadev.springsecuritydemo1508home.security.PersonDetailsService;
 
+/**
+ * Уникальность имени больше не проверяется отдельным запросом: ее обеспечивает индекс
+ * person_security_username_uq, а занятое имя приходит из PeopleService как UsernameAlreadyExistsException.
+ */
 @Component
 public class PersonValidator implements Validator {
 
-    private final PersonDetailsService personDetailsService;
-
-    @Autowired
-    public PersonValidator(PersonDetailsService personDetailsService) {
-        this.personDetailsService = personDetailsService;
-    }
-
     @Override
     public void validate(Object target, Errors errors) {
         Person person = (Person) target;
 
-        try {
-            personDetailsService.loadUserByUsername(person.getUsername());
-        } catch (UsernameNotFoundException e) {
-            return;
+        if (person.getUsername() == null || person.getUsername().isBlank()) {
+            errors.rejectValue("username", "user.empty.name", "Username must not be empty");
         }
-
-        errors.rejectValue("username", "user.found.name",
-                "User with name " + person.getUsername() + " already exists");
     }
 
 
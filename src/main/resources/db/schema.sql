@@ -0,0 +1,49 @@
+-- Выполняется после обновления схемы Hibernate (spring.jpa.defer-datasource-initialization=true).
+-- Скрипт должен оставаться идемпотентным: он запускается при каждом старте приложения.
+
+-- Строки, созданные при GenerationType.IDENTITY, не учитываются последовательностью person_security_seq.
+-- Разовая миграция: пока последовательность отстает от max(id), сдвигаем ее за него, чтобы первый блок
+-- pooled-оптимизатора не пересекся с существующими строками. Когда узлы уже выдают id, последовательность
+-- впереди всех строк и setval не вызывается: старт нового узла не может отодвинуть ее назад.
+select setval('person_security_seq', ids.max_id)
+from (select max(id) as max_id from person_security) ids,
+     pg_sequences seq
+where seq.schemaname = current_schema()
+  and seq.sequencename = 'person_security_seq'
+  and ids.max_id > coalesce(seq.last_value, 0);
+
+-- Индексы для постраничного списка пользователей (/api/v1/users)
+create index if not exists person_security_username_prefix_idx on person_security (username text_pattern_ops);
+create index if not exists person_security_email_domain_idx on person_security (lower(split_part(email, '@', 2)), id);
+create index if not exists person_security_year_of_birth_idx on person_security (year_of_birth, id);
+
+-- Уникальность имени пользователя: регистрация делает одну вставку и получает 409 по этому индексу.
+-- Hibernate не пересоздает ограничения при update (unique_constraint_strategy=SKIP), индекс создается здесь один раз
+create unique index if not exists person_security_username_uq on person_security (username);
+
+-- Отозванные JWT-токены, общие для всех узлов (TokenRevocationList дочитывает новые строки по id).
+-- Строка отзывает либо один токен (jti_hi, jti_lo), либо все токены пользователя, выпущенные до not_before.
+-- not_before - миллисекунды от эпохи (сравнивается с iat_ms токена), expires_at - секунды от эпохи;
+-- после expires_at строка больше ни на что не влияет и удаляется
+create table if not exists token_revocation (
+    id         bigserial primary key,
+    jti_hi     bigint,
+    jti_lo     bigint,
+    person_id  bigint,
+    not_before bigint,
+    expires_at bigint not null
+);
+create index if not exists token_revocation_expires_at_idx on token_revocation (expires_at);
+
+-- Журнал аудита (AuditLog пишет пачками из отдельного потока)
+create table if not exists auth_audit (
+    id             bigserial primary key,
+    created_at     timestamptz not null,
+    event          varchar(16) not null,
+    outcome        varchar(32) not null,
+    person_id      bigint,
+    username       varchar(64),
+    actor          varchar(64),
+    client_address varchar(64)
+);
+create index if not exists auth_audit_created_at_idx on auth_audit (created_at);
@@ -0,0 +1,33 @@
+package site.javadev.springsecuritydemo1508home.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import site.javadev.springsecuritydemo1508home.Application;
+
+import java.util.Arrays;
+
+/**
+ * Приложение для бенчмарков, которым нужны база и кэши, без веб-сервера. По умолчанию - профиль loadtest
+ * (H2 в памяти в режиме PostgreSQL). H2 работает в том же процессе, поэтому обращения к базе в нем почти
+ * ничего не стоят; чтобы мерить на базе из application.properties (PostgreSQL), профиль задается в форке JMH:
+ * -Djmh.options="-jvmArgsAppend -Dbenchmark.profile=default". Бенчмарки, которые пишут в базу, оставляют в ней
+ * своих пользователей.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * properties - параметры бенчмарка в виде key=value. Передаются как аргументы командной строки:
+     * свойства по умолчанию (SpringApplicationBuilder.properties) перекрыл бы application.properties.
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(Application.class)
+                .profiles(System.getProperty("benchmark.profile", "loadtest"))
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN")
+                .run(Arrays.stream(properties).map(property -> "--" + property).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,128 @@
+package site.javadev.springsecuritydemo1508home.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import site.javadev.springsecuritydemo1508home.config.JWTFilter;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.repositories.PeopleRepository;
+import site.javadev.springsecuritydemo1508home.security.PersonDetailsService;
+import site.javadev.springsecuritydemo1508home.security.TokenRevocationList;
+import site.javadev.springsecuritydemo1508home.security.VerifiedTokenCache;
+import site.javadev.springsecuritydemo1508home.util.JWTUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость JWTFilter на запрос: valid - действительный токен, invalid - токен с испорченной подписью
+ * (разбор и проверка подписи, затем 401), anonymous - запрос без заголовка, publicPath - открытый путь,
+ * который фильтр пропускает целиком. С jwt.cache.max-size=0 кэш проверенных токенов выключен, и valid
+ * каждый раз проверяет подпись и загружает пользователя. Ответ и контекст безопасности создаются на каждый
+ * вызов, как в настоящем запросе. Фильтр собирается вручную: в приложении без веб-сервера его бина нет.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JWTFilterBenchmark {
+
+    private static final FilterChain CHAIN = (request, response) -> {
+    };
+
+    @Param({"10000", "0"})
+    private String tokenCacheSize;
+
+    private ConfigurableApplicationContext context;
+    private JWTFilter jwtFilter;
+    private MockHttpServletRequest validRequest;
+    private MockHttpServletRequest invalidRequest;
+    private MockHttpServletRequest anonymousRequest;
+    private MockHttpServletRequest publicPathRequest;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("jwt.cache.max-size=" + tokenCacheSize);
+        JWTUtil jwtUtil = context.getBean(JWTUtil.class);
+        jwtFilter = new JWTFilter(jwtUtil, context.getBean(PersonDetailsService.class),
+                context.getBean(VerifiedTokenCache.class), context.getBean(TokenRevocationList.class),
+                context.getBean(MeterRegistry.class), false);
+
+        Person person = new Person();
+        person.setUsername("j" + Long.toString(System.currentTimeMillis() % 1_000_000_000, 36));
+        person.setPassword(new BCryptPasswordEncoder(4).encode("benchmark"));
+        person.setEmail(person.getUsername() + "@bench.test");
+        person.setYearOfBirth(1990);
+        person.setRole("ROLE_USER");
+        String token = jwtUtil.generateToken(context.getBean(PeopleRepository.class).save(person));
+        // Символ в середине подписи меняется на другой: разбор проходит, проверка - нет
+        int i = token.length() - 10;
+        String tampered = token.substring(0, i) + (token.charAt(i) == 'A' ? 'B' : 'A') + token.substring(i + 1);
+
+        validRequest = request("/hello", "Bearer " + token);
+        invalidRequest = request("/hello", "Bearer " + tampered);
+        anonymousRequest = request("/hello", null);
+        publicPathRequest = request("/api/v1/login", null);
+    }
+
+    private static MockHttpServletRequest request(String path, String authHeader) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        if (authHeader != null) {
+            request.addHeader("Authorization", authHeader);
+        }
+        return request;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int valid() throws Exception {
+        return filter(validRequest);
+    }
+
+    @Benchmark
+    public int invalid() throws Exception {
+        return filter(invalidRequest);
+    }
+
+    @Benchmark
+    public int anonymous() throws Exception {
+        return filter(anonymousRequest);
+    }
+
+    @Benchmark
+    public int publicPath() throws Exception {
+        return filter(publicPathRequest);
+    }
+
+    private int filter(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            jwtFilter.doFilter(request, response, CHAIN);
+            return response.getStatus();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package site.javadev.springsecuritydemo1508home.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.security.TokenVersionRegistry;
+import site.javadev.springsecuritydemo1508home.util.JWTUtil;
+
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подпись и проверка токена: baseline* - прежний JWTUtil, который создавал Algorithm и JWTVerifier
+ * при каждом вызове, остальные - текущий JWTUtil с заранее построенными ключами.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String SECRET = "muchtar";
+    private static final String ISSUER = "Maxima School";
+    private static final String SUBJECT = "JWT with user details";
+
+    private JWTUtil jwtUtil;
+    private Person person;
+    private String token;
+    private String baselineToken;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = jwtUtil();
+        person = new Person();
+        person.setId(1L);
+        person.setUsername("benchmark");
+        person.setRole("ROLE_USER");
+        token = jwtUtil.generateToken(person);
+        baselineToken = baselineSign("benchmark");
+    }
+
+    @Benchmark
+    public String baselineSign() {
+        return baselineSign(person.getUsername());
+    }
+
+    @Benchmark
+    public String baselineVerify() {
+        return JWT.require(Algorithm.HMAC256(SECRET))
+                .withIssuer(ISSUER)
+                .withSubject(SUBJECT)
+                .build()
+                .verify(baselineToken)
+                .getClaim("username").asString();
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtil.generateToken(person);
+    }
+
+    @Benchmark
+    public DecodedJWT verify() {
+        return jwtUtil.verifyToken(token);
+    }
+
+    static JWTUtil jwtUtil() {
+        JWTUtil jwtUtil = new JWTUtil(new TokenVersionRegistry());
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "kid", "primary");
+        ReflectionTestUtils.setField(jwtUtil, "previousKeys", "");
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenMinutes", 15L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+        return jwtUtil;
+    }
+
+    private static String baselineSign(String username) {
+        return JWT.create()
+                .withSubject(SUBJECT)
+                .withClaim("username", username)
+                .withIssuedAt(new Date())
+                .withIssuer(ISSUER)
+                .withExpiresAt(Date.from(ZonedDateTime.now().plusMinutes(60).toInstant()))
+                .sign(Algorithm.HMAC256(SECRET));
+    }
+}
@@ -0,0 +1,80 @@
+package site.javadev.springsecuritydemo1508home.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.model.PersonIdGenerator;
+import site.javadev.springsecuritydemo1508home.repositories.PeopleRepository;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Вставки в секунду при одновременных регистрациях: каждая операция - то, что делает PeopleService.savePerson
+ * после хэширования пароля (отдельная транзакция с одной вставкой). BCrypt не входит в замер, иначе он
+ * заслонил бы разницу между генераторами id.
+ * <p>
+ * incrementSize=1 - базовый вариант, как при IDENTITY: за каждым id - отдельное обращение к базе.
+ * incrementSize=50 - pooled-последовательность person_security_seq: одно обращение на блок из 50 id.
+ * Проверка шага существующей последовательности отключена, иначе Hibernate взял бы шаг из базы для обоих вариантов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class PersonInsertBenchmark {
+
+    @Param({"1", "50"})
+    private String incrementSize;
+
+    private final AtomicLong counter = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private PeopleRepository peopleRepository;
+    private String passwordHash;
+    // Имена не пересекаются с пользователями прошлых запусков в той же базе
+    private String runId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "spring.jpa.properties." + PersonIdGenerator.INCREMENT_SIZE_SETTING + "=" + incrementSize,
+                "spring.jpa.properties.hibernate.id.sequence.increment_size_mismatch_strategy=none");
+        peopleRepository = context.getBean(PeopleRepository.class);
+        passwordHash = new BCryptPasswordEncoder(4).encode("benchmark");
+        runId = Long.toString(System.currentTimeMillis() % 1_000_000_000, 36);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long savePerson() {
+        long n = counter.incrementAndGet();
+        Person person = new Person();
+        String username = "b" + runId + "_" + n;
+        person.setUsername(username);
+        person.setPassword(passwordHash);
+        person.setEmail(username + "@bench.test");
+        person.setYearOfBirth(1990);
+        person.setRole("ROLE_USER");
+        return peopleRepository.save(person).getId();
+    }
+}
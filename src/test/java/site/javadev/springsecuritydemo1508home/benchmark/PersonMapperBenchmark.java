@@ -0,0 +1,70 @@
+package site.javadev.springsecuritydemo1508home.benchmark;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import site.javadev.springsecuritydemo1508home.dto.PersonDTO;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.service.PersonMapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование Person <-> PersonDTO: modelMapper* - прежний ModelMapper (один экземпляр на приложение,
+ * как был бин), остальные - PersonMapper. Аллокации видны с -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonMapperBenchmark {
+
+    private final PersonMapper personMapper = new PersonMapper();
+    private final ModelMapper modelMapper = new ModelMapper();
+    private Person person;
+    private PersonDTO personDTO;
+
+    @Setup
+    public void setUp() {
+        person = new Person();
+        person.setId(1L);
+        person.setUsername("benchmark");
+        person.setPassword("{bcrypt}$2a$10$abcdefghijklmnopqrstuv");
+        person.setEmail("benchmark@bench.test");
+        person.setYearOfBirth(1990);
+        person.setRole("ROLE_USER");
+        // Первое сопоставление типов ModelMapper строит при первом вызове, а не в замере
+        personDTO = modelMapper.map(person, PersonDTO.class);
+        modelMapper.map(personDTO, Person.class);
+    }
+
+    @Benchmark
+    public PersonDTO modelMapperToDTO() {
+        return modelMapper.map(person, PersonDTO.class);
+    }
+
+    @Benchmark
+    public Person modelMapperToPerson() {
+        return modelMapper.map(personDTO, Person.class);
+    }
+
+    @Benchmark
+    public PersonDTO toDTO() {
+        return personMapper.toDTO(person);
+    }
+
+    @Benchmark
+    public Person toPerson() {
+        return personMapper.toPerson(personDTO);
+    }
+}
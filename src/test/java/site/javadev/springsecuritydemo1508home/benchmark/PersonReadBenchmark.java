@@ -0,0 +1,92 @@
+package site.javadev.springsecuritydemo1508home.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.repositories.PeopleRepository;
+import site.javadev.springsecuritydemo1508home.service.PeopleService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтения пользователя в секунду по id и по имени (PeopleService.findById / findByUsername) с кэшем второго
+ * уровня и без него. Пользователи выбираются случайно из users заранее созданных; все они помещаются в кэш
+ * (person.cache.max-size), поэтому после прогрева с кэшем чтения не доходят до базы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonReadBenchmark {
+
+    @Param({"true", "false"})
+    private String secondLevelCache;
+
+    @Param("1000")
+    private int users;
+
+    private ConfigurableApplicationContext context;
+    private PeopleService peopleService;
+    private Long[] ids;
+    private String[] usernames;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=" + secondLevelCache);
+        peopleService = context.getBean(PeopleService.class);
+
+        String passwordHash = new BCryptPasswordEncoder(4).encode("benchmark");
+        String runId = Long.toString(System.currentTimeMillis() % 1_000_000_000, 36);
+        List<Person> people = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            Person person = new Person();
+            person.setUsername("r" + runId + "_" + i);
+            person.setPassword(passwordHash);
+            person.setEmail(person.getUsername() + "@bench.test");
+            person.setYearOfBirth(1990);
+            person.setRole("ROLE_USER");
+            people.add(person);
+        }
+        PeopleRepository peopleRepository = context.getBean(PeopleRepository.class);
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class))
+                .executeWithoutResult(status -> peopleRepository.saveAll(people));
+        ids = people.stream().map(Person::getId).toArray(Long[]::new);
+        usernames = people.stream().map(Person::getUsername).toArray(String[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Person> findById() {
+        return peopleService.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public Optional<Person> findByUsername() {
+        return peopleService.findByUsername(usernames[ThreadLocalRandom.current().nextInt(usernames.length)]);
+    }
+}
@@ -0,0 +1,87 @@
+package site.javadev.springsecuritydemo1508home.benchmark;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import site.javadev.springsecuritydemo1508home.datasource.ReadYourWrites;
+import site.javadev.springsecuritydemo1508home.security.PersonDetails;
+import site.javadev.springsecuritydemo1508home.security.PersonDetailsService;
+import site.javadev.springsecuritydemo1508home.security.UsernameFilter;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Промах поиска пользователя, который отсекает фильтр имен (без запроса к базе), - чтобы в замер
+ * попала только стоимость сообщения о промахе. baselineThrowing - прежний loadUserByUsername: новое
+ * UsernameNotFoundException с именем в сообщении и полным стеком; throwing - UnknownUsernameException
+ * без стека; optional - findByUsername. Стек здесь неглубокий, в цепочке фильтров он в разы длиннее,
+ * и baseline там дороже. Аллокации видны с -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserLookupBenchmark {
+
+    private static final String MISSING = "missing_user";
+
+    private UsernameFilter usernameFilter;
+    private PersonDetailsService personDetailsService;
+
+    @Setup
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:lookup-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table person_security(username varchar(100))");
+        jdbcTemplate.update("insert into person_security values ('benchmark')");
+
+        usernameFilter = new UsernameFilter(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+                new ReadYourWrites("", Duration.ZERO), true, 1000, 0.01);
+        usernameFilter.rebuild();
+        // Репозиторий не нужен: до него промах не доходит
+        personDetailsService = new PersonDetailsService(null, usernameFilter, new ReadYourWrites("", Duration.ZERO));
+    }
+
+    @Benchmark
+    public Object baselineThrowing() {
+        try {
+            if (!usernameFilter.mightContain(MISSING)) {
+                throw new UsernameNotFoundException("Repository has not found user with username: " + MISSING);
+            }
+            return null;
+        } catch (UsernameNotFoundException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object throwing() {
+        try {
+            return personDetailsService.loadUserByUsername(MISSING);
+        } catch (UsernameNotFoundException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Optional<PersonDetails> optional() {
+        return personDetailsService.findByUsername(MISSING);
+    }
+}
@@ -0,0 +1,152 @@
+package site.javadev.springsecuritydemo1508home.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import site.javadev.springsecuritydemo1508home.test_rest_template.model.User;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OutboundClientTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+    private final CountDownLatch releaseSlow = new CountDownLatch(1);
+
+    private HttpServer server;
+    private ExecutorService callers;
+    private URI baseUri;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/user", exchange -> respond(exchange, 200, "{\"name\":\"Alex\",\"job\":\"devops\"}"));
+        server.createContext("/missing", exchange -> respond(exchange, 404, "{}"));
+        // Отвечает только после releaseSlow: запросы к нему остаются "в полете"
+        server.createContext("/slow", exchange -> {
+            slowCalls.incrementAndGet();
+            try {
+                releaseSlow.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "{\"name\":\"slow\"}");
+        });
+        server.start();
+        baseUri = URI.create("http://localhost:" + server.getAddress().getPort());
+        callers = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void stopStub() {
+        releaseSlow.countDown();
+        callers.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    void getJsonParsesResponseAndRecordsTimer() {
+        OutboundClient client = client(Duration.ofSeconds(5), 4);
+
+        User user = client.getJson(baseUri.resolve("/user"), User.class);
+
+        assertThat(user).extracting(User::getName).isEqualTo("Alex");
+        assertThat(meterRegistry.get("outbound.requests").tag("status", "200").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void nonSuccessStatusIsReportedWithCode() {
+        OutboundClient client = client(Duration.ofSeconds(5), 4);
+
+        assertThatThrownBy(() -> client.getJson(baseUri.resolve("/missing"), User.class))
+                .isInstanceOf(OutboundClientException.class)
+                .extracting(e -> ((OutboundClientException) e).getStatus())
+                .isEqualTo(404);
+    }
+
+    @Test
+    void identicalGetsInFlightShareOneCall() throws Exception {
+        OutboundClient client = client(Duration.ofSeconds(5), 4);
+
+        List<Future<User>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(callers.submit(() -> client.getJson(baseUri.resolve("/slow"), User.class)));
+        }
+        awaitCoalesced(client, 4);
+        releaseSlow.countDown();
+
+        for (Future<User> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).extracting(User::getName).isEqualTo("slow");
+        }
+        assertThat(slowCalls).hasValue(1);
+    }
+
+    @Test
+    void requestsOverHostLimitAreRejected() throws Exception {
+        OutboundClient client = client(Duration.ofSeconds(5), 1);
+
+        Future<User> first = callers.submit(() -> client.getJson(baseUri.resolve("/slow"), User.class));
+        while (slowCalls.get() == 0) {
+            Thread.sleep(10);
+        }
+
+        assertThatThrownBy(() -> client.getJson(baseUri.resolve("/user"), User.class))
+                .isInstanceOf(OutboundClientException.class)
+                .hasMessageContaining("Too many concurrent requests");
+        assertThat(client.rejectedCount()).isEqualTo(1);
+
+        releaseSlow.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).extracting(User::getName).isEqualTo("slow");
+        assertThat(client.inFlightCount()).isZero();
+    }
+
+    @Test
+    void slowResponseTimesOut() {
+        OutboundClient client = client(Duration.ofMillis(200), 4);
+
+        assertThatThrownBy(() -> client.getJson(baseUri.resolve("/slow"), User.class))
+                .isInstanceOf(OutboundClientException.class)
+                .hasMessageContaining("timed out");
+        assertThat(meterRegistry.get("outbound.requests").tag("status", "TIMEOUT").timer().count()).isEqualTo(1);
+    }
+
+    private OutboundClient client(Duration requestTimeout, int maxConcurrentPerHost) {
+        return new OutboundClient(new ObjectMapper(), meterRegistry, Duration.ofSeconds(1), requestTimeout,
+                Duration.ofMillis(100), maxConcurrentPerHost);
+    }
+
+    private static void awaitCoalesced(OutboundClient client, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (client.coalescedCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
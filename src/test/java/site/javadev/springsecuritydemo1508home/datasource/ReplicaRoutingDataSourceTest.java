@@ -0,0 +1,150 @@
+package site.javadev.springsecuritydemo1508home.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Две базы H2 в памяти вместо основной базы и реплики. Репликации между ними нет: в каждой таблица marker
+ * со своим значением, по которому видно, куда ушел запрос.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final String LAG_QUERY = "select seconds from replica_lag";
+
+    private final ToggleableDataSource replica = new ToggleableDataSource(database("replica"));
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        new JdbcTemplate(replica).execute("create table replica_lag(seconds double)");
+        new JdbcTemplate(replica).update("insert into replica_lag values (0)");
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replica);
+        // Вторая реплика не отвечает и не должна получать запросы
+        replicas.put("replica-2", new ToggleableDataSource(database("broken")).down());
+        routing = new ReplicaRoutingDataSource(primary, replicas, LAG_QUERY, Duration.ofSeconds(1));
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @Test
+    void readOnlyTransactionsGoToAvailableReplica() {
+        assertThat(readOnlyMarker()).as("before the first check").isEqualTo("primary");
+
+        routing.checkReplicas();
+
+        assertThat(routing.isAvailable("replica-1")).isTrue();
+        assertThat(routing.isAvailable("replica-2")).isFalse();
+        for (int i = 0; i < 4; i++) {
+            assertThat(readOnlyMarker()).isEqualTo("replica");
+        }
+        String written = readWrite.execute(status -> marker());
+        assertThat(written).isEqualTo("primary");
+        assertThat(marker()).as("outside a transaction").isEqualTo("primary");
+    }
+
+    @Test
+    void laggingReplicaIsSkippedUntilItCatchesUp() {
+        new JdbcTemplate(replica).update("update replica_lag set seconds = 5");
+        routing.checkReplicas();
+
+        assertThat(readOnlyMarker()).isEqualTo("primary");
+        assertThat(routing.lagSeconds("replica-1")).isEqualTo(5.0);
+
+        new JdbcTemplate(replica).update("update replica_lag set seconds = 0.2");
+        routing.checkReplicas();
+
+        assertThat(readOnlyMarker()).isEqualTo("replica");
+    }
+
+    @Test
+    void failedReplicaConnectionFallsBackToPrimary() {
+        routing.checkReplicas();
+        replica.down();
+
+        assertThat(readOnlyMarker()).isEqualTo("primary");
+        assertThat(routing.isAvailable("replica-1")).isFalse();
+        assertThat(routing.fallbackReadCount()).isEqualTo(1);
+    }
+
+    @Test
+    void recentlyWrittenUserIsReadFromPrimary() throws InterruptedException {
+        routing.checkReplicas();
+        ReadYourWrites readYourWrites = new ReadYourWrites("jdbc:h2:mem:replica", Duration.ofMillis(200));
+
+        readYourWrites.written(1L, "old_name", "new_name");
+
+        assertThat(readYourWrites.read(1L, null, this::readOnlyMarker)).isEqualTo("primary");
+        assertThat(readYourWrites.read(null, "old_name", this::readOnlyMarker)).isEqualTo("primary");
+        assertThat(readYourWrites.read(2L, "other", this::readOnlyMarker)).isEqualTo("replica");
+        assertThat(routing.pinnedReadCount()).isEqualTo(2);
+
+        Thread.sleep(250);
+        assertThat(readYourWrites.read(1L, "new_name", this::readOnlyMarker)).isEqualTo("replica");
+    }
+
+    private String readOnlyMarker() {
+        return readOnly.execute(status -> marker());
+    }
+
+    private String marker() {
+        return jdbcTemplate.queryForObject("select name from marker", String.class);
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table marker(name varchar(16))");
+        jdbcTemplate.update("insert into marker values (?)", name);
+        return dataSource;
+    }
+
+    private static class ToggleableDataSource extends DelegatingDataSource {
+
+        private volatile boolean down;
+
+        ToggleableDataSource(DataSource target) {
+            super(target);
+        }
+
+        ToggleableDataSource down() {
+            down = true;
+            return this;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+}
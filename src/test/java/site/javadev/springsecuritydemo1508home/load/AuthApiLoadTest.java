@@ -0,0 +1,224 @@
+package site.javadev.springsecuritydemo1508home.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.repositories.PeopleRepository;
+import site.javadev.springsecuritydemo1508home.security.BoundedPasswordEncoder;
+import site.javadev.springsecuritydemo1508home.security.UsernameFilter;
+import site.javadev.springsecuritydemo1508home.util.JWTUtil;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный тест API аутентификации: приложение на H2 в режиме PostgreSQL (профиль loadtest),
+ * N заранее созданных пользователей и смесь запросов login / registration / user/{id} / hello
+ * от генератора с открытым циклом. Результат - JSON с пропускной способностью и перцентилями задержки
+ * в target/loadtest, чтобы сравнивать прогоны до и после изменения.
+ * <p>
+ * Запуск: mvn test -Ploadtest [-Dloadtest.rate=200 -Dloadtest.duration=PT60S -Dspring.threads.virtual.enabled=true].
+ * Обычный mvn test этот тест пропускает (@Tag("load")).
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+class AuthApiLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthApiLoadTest.class);
+
+    private static final String PASSWORD = "loadtest";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PeopleRepository peopleRepository;
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+    @Autowired
+    private UsernameFilter usernameFilter;
+    @Autowired
+    private JWTUtil jwtUtil;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${loadtest.users:1000}")
+    private int users;
+    @Value("${loadtest.rate:100}")
+    private double rate;
+    @Value("${loadtest.warmup:PT10S}")
+    private Duration warmup;
+    @Value("${loadtest.duration:PT30S}")
+    private Duration duration;
+    @Value("${loadtest.mix:login=5,registration=1,user=47,hello=47}")
+    private String mix;
+    @Value("${loadtest.seed:42}")
+    private long seed;
+    @Value("${loadtest.max-error-rate:0.01}")
+    private double maxErrorRate;
+    @Value("${loadtest.output-dir:target/loadtest}")
+    private Path outputDir;
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Test
+    void authApiUnderMixedLoad() throws Exception {
+        List<SeededUser> seeded = seedUsers();
+
+        String baseUrl = "http://localhost:" + port;
+        AtomicLong registrations = new AtomicLong();
+        String runId = Long.toString(System.currentTimeMillis() % 1_000_000, 36);
+        Duration timeout = Duration.ofSeconds(10);
+        // Запросы строятся в одном потоке генератора, поэтому при том же seed последовательность пользователей та же
+        Random random = new Random(seed);
+
+        Map<String, Integer> weights = parseMix(mix);
+        List<OpenLoopGenerator.Operation> operations = new ArrayList<>();
+        operations.add(new OpenLoopGenerator.Operation("login", weights.getOrDefault("login", 0), () -> {
+            SeededUser user = pick(seeded, random);
+            return post(baseUrl + "/api/v1/login", timeout, Map.of(
+                    "username", user.username(), "password", PASSWORD, "email", user.username() + "@load.test"));
+        }, 200));
+        operations.add(new OpenLoopGenerator.Operation("registration", weights.getOrDefault("registration", 0), () -> {
+            String username = "r" + runId + "_" + registrations.incrementAndGet();
+            return post(baseUrl + "/api/v1/registration", timeout, Map.of(
+                    "username", username, "password", PASSWORD, "email", username + "@load.test", "yearOfBirth", 1990));
+        }, 201));
+        operations.add(new OpenLoopGenerator.Operation("user", weights.getOrDefault("user", 0), () -> {
+            SeededUser user = pick(seeded, random);
+            return get(baseUrl + "/api/v1/user/" + user.id(), user.token(), timeout);
+        }, 200));
+        operations.add(new OpenLoopGenerator.Operation("hello", weights.getOrDefault("hello", 0), () ->
+                get(baseUrl + "/hello", pick(seeded, random).token(), timeout), 200));
+        operations.removeIf(operation -> operation.weight() <= 0);
+
+        Map<String, OpenLoopGenerator.Stats> stats;
+        try (HttpClient client = HttpClient.newBuilder().connectTimeout(timeout).build()) {
+            stats = new OpenLoopGenerator(client, operations, seed).run(rate, warmup, duration);
+        }
+        OpenLoopGenerator.Stats total = OpenLoopGenerator.Stats.merge(stats.values());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("config", config());
+        report.put("total", total.toMap());
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        stats.forEach((name, operationStats) -> endpoints.put(name, operationStats.toMap()));
+        report.put("endpoints", endpoints);
+
+        Files.createDirectories(outputDir);
+        Path output = outputDir.resolve("auth-api-" + (virtualThreads ? "virtual" : "platform") + ".json");
+        objectMapper.writer().with(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+        log.info("Load test result written to {}: {}", output.toAbsolutePath(), objectMapper.writeValueAsString(report));
+
+        assertThat(total.requests()).isPositive();
+        assertThat((double) total.errors() / total.requests()).isLessThanOrEqualTo(maxErrorRate);
+    }
+
+    /**
+     * Создает пользователей пачками с одним общим хэшем пароля (хэширование каждого заняло бы минуты)
+     * и заранее выдает каждому access-токен для запросов user/{id} и hello.
+     */
+    private List<SeededUser> seedUsers() {
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        List<SeededUser> seeded = new ArrayList<>(users);
+        for (int from = 0; from < users; from += 500) {
+            int to = Math.min(users, from + 500);
+            List<Person> chunk = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                Person person = new Person();
+                person.setUsername("load" + i);
+                person.setPassword(passwordHash);
+                person.setEmail("load" + i + "@load.test");
+                person.setYearOfBirth(1990);
+                person.setRole("ROLE_USER");
+                chunk.add(person);
+            }
+            transactionTemplate.executeWithoutResult(status -> peopleRepository.saveAll(chunk));
+            chunk.forEach(person -> seeded.add(new SeededUser(person.getId(), person.getUsername(),
+                    jwtUtil.generateToken(person))));
+        }
+        // Фильтр имен построен при старте, до появления этих пользователей
+        usernameFilter.rebuild();
+        return seeded;
+    }
+
+    private Map<String, Object> config() {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("users", users);
+        config.put("ratePerSecond", rate);
+        config.put("warmupSeconds", warmup.toSeconds());
+        config.put("durationSeconds", duration.toSeconds());
+        config.put("mix", mix);
+        config.put("seed", seed);
+        config.put("virtualThreads", virtualThreads);
+        config.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        config.put("javaVersion", Runtime.version().toString());
+        return config;
+    }
+
+    private HttpRequest post(String url, Duration timeout, Map<String, Object> body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(url))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static HttpRequest get(String url, String token, Duration timeout) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private static SeededUser pick(List<SeededUser> seeded, Random random) {
+        return seeded.get(random.nextInt(seeded.size()));
+    }
+
+    // login=5,registration=1,user=47,hello=47
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            weights.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+
+    private record SeededUser(Long id, String username, String token) {
+    }
+}
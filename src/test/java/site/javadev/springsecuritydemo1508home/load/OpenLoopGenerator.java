@@ -0,0 +1,168 @@
+package site.javadev.springsecuritydemo1508home.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Генератор нагрузки с открытым циклом: запросы уходят по расписанию с заданной частотой,
+ * не дожидаясь ответов на предыдущие. Задержка считается от запланированного момента отправки,
+ * поэтому очередь, которая накапливается при перегрузке сервера, попадает в перцентили
+ * (генератор с закрытым циклом в такой ситуации просто замедлился бы вместе с сервером).
+ */
+final class OpenLoopGenerator {
+
+    // Задержки в микросекундах, до минуты, три значащие цифры
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final HttpClient client;
+    private final List<Operation> operations;
+    private final int totalWeight;
+    private final Random random;
+
+    OpenLoopGenerator(HttpClient client, List<Operation> operations, long seed) {
+        this.client = client;
+        this.operations = operations;
+        this.totalWeight = operations.stream().mapToInt(Operation::weight).sum();
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Операция нагрузки: доля в смеси, построение запроса и ожидаемый код ответа.
+     */
+    record Operation(String name, int weight, Supplier<HttpRequest> request, int expectedStatus) {
+    }
+
+    /**
+     * Отправляет запросы с частотой ratePerSecond в течение warmup + duration.
+     * Ответы на запросы, запланированные во время прогрева, в статистику не попадают.
+     */
+    Map<String, Stats> run(double ratePerSecond, Duration warmup, Duration duration) {
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        operations.forEach(operation -> stats.put(operation.name(), new Stats()));
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Operation operation = next();
+            Stats operationStats = intended >= measureFrom ? stats.get(operation.name()) : null;
+            inFlight.add(client.sendAsync(operation.request().get(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (operationStats != null) {
+                            operationStats.record(intended, response != null ? response.statusCode() : -1,
+                                    response != null && response.statusCode() == operation.expectedStatus());
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .exceptionally(error -> null)
+                .join();
+        stats.values().forEach(operationStats -> operationStats.seconds = duration.toNanos() / 1e9);
+        return stats;
+    }
+
+    private Operation next() {
+        int pick = random.nextInt(totalWeight);
+        for (Operation operation : operations) {
+            pick -= operation.weight();
+            if (pick < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("Empty operation mix");
+    }
+
+    /**
+     * Статистика одной операции. Код -1 - запрос завершился ошибкой без ответа (таймаут, разрыв соединения).
+     */
+    static final class Stats {
+
+        private final Histogram latency = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final LongAdder errors = new LongAdder();
+        private double seconds;
+
+        private void record(long intendedNanos, int status, boolean expected) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos);
+            latency.recordValue(Math.min(micros, HIGHEST_LATENCY_MICROS));
+            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+            if (!expected) {
+                errors.increment();
+            }
+        }
+
+        static Stats merge(Iterable<Stats> parts) {
+            Stats total = new Stats();
+            for (Stats part : parts) {
+                total.latency.add(part.latency);
+                part.statuses.forEach((status, count) ->
+                        total.statuses.computeIfAbsent(status, key -> new LongAdder()).add(count.sum()));
+                total.errors.add(part.errors.sum());
+                total.seconds = part.seconds;
+            }
+            return total;
+        }
+
+        long requests() {
+            return latency.getTotalCount();
+        }
+
+        long errors() {
+            return errors.sum();
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> latencyMillis = new LinkedHashMap<>();
+            latencyMillis.put("p50", millis(latency.getValueAtPercentile(50)));
+            latencyMillis.put("p90", millis(latency.getValueAtPercentile(90)));
+            latencyMillis.put("p99", millis(latency.getValueAtPercentile(99)));
+            latencyMillis.put("p999", millis(latency.getValueAtPercentile(99.9)));
+            latencyMillis.put("max", millis(latency.getMaxValue()));
+            latencyMillis.put("mean", Math.round(latency.getMean()) / 1000.0);
+
+            Map<String, Long> statusCounts = new TreeMap<>();
+            statuses.forEach((status, count) -> statusCounts.put(String.valueOf(status), count.sum()));
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("requests", requests());
+            result.put("errors", errors());
+            result.put("throughputPerSecond", seconds > 0 ? Math.round(requests() / seconds * 10) / 10.0 : 0);
+            result.put("latencyMillis", latencyMillis);
+            result.put("statuses", statusCounts);
+            return result;
+        }
+
+        private static double millis(long micros) {
+            return micros / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package site.javadev.springsecuritydemo1508home.reactive;
+
+import com.auth0.jwt.JWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import site.javadev.springsecuritydemo1508home.security.TokenRevocationList;
+import site.javadev.springsecuritydemo1508home.security.VerifiedTokenCache;
+import site.javadev.springsecuritydemo1508home.util.JWTUtil;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+class JWTWebFilterTests {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private JWTUtil jwtUtil;
+
+    @Autowired
+    private ReactivePersonDetailsService personDetailsService;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Test
+    void authenticatedRequestKeepsControllerStatus() {
+        String username = newUsername();
+        String token = register(username);
+        Long id = JWT.decode(token).getClaim("id").asLong();
+
+        // Первый запрос с токеном не находит его в кэше проверенных токенов и загружает пользователя
+        webTestClient.get().uri("/api/v1/user/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.username").isEqualTo(username);
+    }
+
+    @Test
+    void downstreamStatusIsNotRewrittenAfterUserLoad() {
+        String token = register(newUsername());
+        // Без кэша проверенных токенов: каждый запрос загружает пользователя
+        JWTWebFilter filter = new JWTWebFilter(jwtUtil, personDetailsService,
+                new VerifiedTokenCache(0, tokenRevocationList), tokenRevocationList, false);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/show")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+        // Цепочка, которая ставит статус, но не фиксирует ответ, - иначе перезапись статуса была бы не видна
+        WebFilterChain chain = chainExchange -> {
+            chainExchange.getResponse().setStatusCode(HttpStatus.OK);
+            return Mono.empty();
+        };
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private static String newUsername() {
+        return "w" + Long.toString(System.nanoTime() % 1_000_000_000L, 36);
+    }
+
+    private String register(String username) {
+        Map<?, ?> tokens = webTestClient.post().uri("/api/v1/registration")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("username", username, "password", "secret1", "email", username + "@reactive.test"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Map.class)
+                .returnResult().getResponseBody();
+        return (String) tokens.get("jwt-token");
+    }
+}
@@ -0,0 +1,23 @@
+package site.javadev.springsecuritydemo1508home.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginRateLimiterTest {
+
+    @Test
+    void fullTableRejectsNewKeysInsteadOfDroppingThrottledOnes() {
+        // 1 попытка в минуту без всплеска по IP, имена не ограничены, в таблице место для двух адресов
+        LoginRateLimiter limiter = new LoginRateLimiter(1, 1, 0, 0, 2);
+
+        assertThat(limiter.tryAcquire("10.0.0.1", null)).isZero();
+        assertThat(limiter.tryAcquire("10.0.0.1", null)).isPositive();
+        assertThat(limiter.tryAcquire("10.0.0.2", null)).isZero();
+
+        // Ни одно ведро не восстановилось: новый адрес отклоняется, а ограничение первого остается
+        assertThat(limiter.tryAcquire("10.0.0.3", null)).isPositive();
+        assertThat(limiter.tryAcquire("10.0.0.1", null)).isPositive();
+        assertThat(limiter.trackedKeys()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,42 @@
+package site.javadev.springsecuritydemo1508home.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.repositories.PeopleRepository;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class PeopleServiceTest {
+
+    @Autowired
+    private PeopleService peopleService;
+
+    @MockitoSpyBean
+    private PeopleRepository peopleRepository;
+
+    @Test
+    void takenUsernameIsRejectedByConstraintWithoutPreCheck() {
+        String username = "s" + Long.toString(System.nanoTime() % 1_000_000_000L, 36);
+        peopleService.savePerson(person(username));
+
+        // Фильтр имен по умолчанию выключен: дубликат находит ограничение, а не отдельный запрос
+        assertThatThrownBy(() -> peopleService.savePerson(person(username)))
+                .isInstanceOf(UsernameAlreadyExistsException.class);
+        verify(peopleRepository, never()).existsByUsername(any());
+    }
+
+    private static Person person(String username) {
+        Person person = new Person();
+        person.setUsername(username);
+        person.setPassword("secret1");
+        person.setEmail(username + "@service.test");
+        return person;
+    }
+}
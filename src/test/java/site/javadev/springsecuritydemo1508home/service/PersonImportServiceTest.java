@@ -0,0 +1,68 @@
+package site.javadev.springsecuritydemo1508home.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import site.javadev.springsecuritydemo1508home.model.Person;
+import site.javadev.springsecuritydemo1508home.repositories.PeopleRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+
+@SpringBootTest
+class PersonImportServiceTest {
+
+    @Autowired
+    private PersonImportService personImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoSpyBean
+    private PeopleRepository peopleRepository;
+
+    @Test
+    void duplicateInsertedConcurrentlyFailsOnlyItsRow() throws Exception {
+        String prefix = "i" + Long.toString(System.nanoTime() % 1_000_000_000L, 36);
+        Person existing = new Person();
+        existing.setUsername(prefix + "_taken");
+        existing.setPassword("{noop}secret");
+        existing.setEmail(prefix + "@import.test");
+        existing.setRole("ROLE_USER");
+        peopleRepository.save(existing);
+        // Имя занято после проверки пачки, как при параллельной регистрации: конфликт находит только вставка
+        doReturn(Set.of()).when(peopleRepository).findExistingUsernames(any());
+
+        String input = line(prefix + "_a") + line(prefix + "_taken") + line(prefix + "_b");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        personImportService.importPeople(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), false,
+                output, "admin", "127.0.0.1");
+
+        assertThat(output.toString(StandardCharsets.UTF_8).lines()
+                .map(json -> read(json).get("status").asText()))
+                .containsExactly("CREATED", "EXISTS", "CREATED");
+        assertThat(peopleRepository.findByUsername(prefix + "_a")).isPresent();
+        assertThat(peopleRepository.findByUsername(prefix + "_b")).isPresent();
+    }
+
+    private static String line(String username) {
+        return "{\"username\":\"" + username + "\",\"password\":\"secret1\",\"email\":\"" + username + "@import.test\"}\n";
+    }
+
+    private JsonNode read(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package site.javadev.springsecuritydemo1508home.service;
+
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import site.javadev.springsecuritydemo1508home.dto.PersonDTO;
+import site.javadev.springsecuritydemo1508home.model.Person;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersonMapperTest {
+
+    private final PersonMapper personMapper = new PersonMapper();
+    private final ModelMapper modelMapper = new ModelMapper();
+
+    @Test
+    void toPersonMapsSameFieldsAsModelMapper() throws Exception {
+        PersonDTO personDTO = filled(PersonDTO.class);
+
+        assertThat(personMapper.toPerson(personDTO))
+                .usingRecursiveComparison()
+                .isEqualTo(modelMapper.map(personDTO, Person.class));
+    }
+
+    @Test
+    void toDTOMapsSameFieldsAsModelMapper() throws Exception {
+        Person person = filled(Person.class);
+
+        assertThat(personMapper.toDTO(person))
+                .usingRecursiveComparison()
+                .isEqualTo(modelMapper.map(person, PersonDTO.class));
+    }
+
+    // Каждое поле получает свое значение, поэтому новое поле, которое ModelMapper
+    // сопоставил бы по имени, а PersonMapper пропустил, сразу ломает тест
+    private static <T> T filled(Class<T> type) throws Exception {
+        T object = type.getDeclaredConstructor().newInstance();
+        int counter = 1;
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            field.setAccessible(true);
+            field.set(object, sampleValue(field.getType(), counter++));
+        }
+        return object;
+    }
+
+    private static Object sampleValue(Class<?> type, int counter) {
+        if (type == String.class) {
+            return "value" + counter;
+        }
+        if (type == Integer.class || type == int.class) {
+            return 1900 + counter;
+        }
+        if (type == Long.class || type == long.class) {
+            return (long) counter;
+        }
+        throw new IllegalStateException("Add a sample value for field type " + type.getName());
+    }
+}
@@ -0,0 +1,22 @@
+-- Схема для H2 (профиль loadtest): только то из db/schema.sql, что не создает Hibernate
+create table if not exists token_revocation (
+    id         bigserial primary key,
+    jti_hi     bigint,
+    jti_lo     bigint,
+    person_id  bigint,
+    not_before bigint,
+    expires_at bigint not null
+);
+create index if not exists token_revocation_expires_at_idx on token_revocation (expires_at);
+
+create table if not exists auth_audit (
+    id             bigserial primary key,
+    created_at     timestamp with time zone not null,
+    event          varchar(16) not null,
+    outcome        varchar(32) not null,
+    person_id      bigint,
+    username       varchar(64),
+    actor          varchar(64),
+    client_address varchar(64)
+);
+create index if not exists auth_audit_created_at_idx on auth_audit (created_at);